@@ -0,0 +1,51 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures DependencyTree.createTree, which lists all directories of the project and builds the Node tree and the
+ * NodeIndex.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CreateTreeBenchmark {
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    @Param("50")
+    private int packages;
+
+    @Param("40")
+    private int classes;
+
+    private Path projectDir;
+
+    @Setup(Level.Trial)
+    public void createProject() throws IOException {
+        projectDir = Files.createTempDirectory("dependencytree-benchmark");
+        new SyntheticProject(packages, classes, 0).write(projectDir);
+    }
+
+    @Benchmark
+    public Node createTree() {
+        File rootFile = projectDir.toFile();
+        Node root = new Node(new LinkedList<>(), rootFile.getPath(), rootFile.getName(), "");
+        DependencyTree dependencyTree = new DependencyTree(SyntheticProject.BASEPACKAGE, SyntheticProject.BASEPACKAGE_DOT, root, parallelism);
+        dependencyTree.createTree(root);
+        return root;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteProject() throws IOException {
+        SyntheticProject.delete(projectDir);
+    }
+}
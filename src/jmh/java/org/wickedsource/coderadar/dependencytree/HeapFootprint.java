@@ -0,0 +1,73 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedList;
+
+/**
+ * Measures the retained heap of an analyzed tree of Node objects and of the same tree as a ColumnarTree. JMH does
+ * not measure retained memory, so this is a main class run from the jmh jar:
+ *
+ * java -cp build/libs/dependency-tree-0.0.1-SNAPSHOT-jmh.jar org.wickedsource.coderadar.dependencytree.HeapFootprint
+ *      [packages] [classes] [imports] [wildcardRatio]
+ *
+ * The heap is measured after full garbage collections, so run it with G1 and a fixed heap size, e.g.
+ * -XX:+UseG1GC -Xms2g -Xmx2g; with the serial and parallel collectors of Java 8 the tree of the previous analysis
+ * was still counted. The project is analyzed once before measuring, so classes are loaded and the canonical ids
+ * Node keeps for every path exist already and are not counted.
+ */
+public class HeapFootprint {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int packages = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int classes = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int imports = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        double wildcardRatio = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+        Path projectDir = Files.createTempDirectory("dependencytree-heap");
+        try {
+            new SyntheticProject(packages, classes, imports, wildcardRatio).write(projectDir);
+            analyze(projectDir);
+            long before = usedHeap();
+            Node root = analyze(projectDir);
+            long withNodes = usedHeap();
+            long estimated = new TreeSnapshot(root, new NodeIndex(root), 0).getEstimatedBytes();
+            ColumnarTree tree = ColumnarTree.of(root);
+            root = null;
+            long withColumnar = usedHeap();
+            int size = tree.size();
+
+            System.out.printf("project: %d packages, %d classes each, %d imports, wildcard ratio %.2f; %d nodes%n",
+                    packages, classes, imports, wildcardRatio, size);
+            System.out.printf("%-34s %,14d bytes %,8d bytes/node%n", "Node tree", withNodes - before, (withNodes - before) / size);
+            System.out.printf("%-34s %,14d bytes %,8d bytes/node%n", "Node tree, TreeSnapshot estimate", estimated, estimated / size);
+            System.out.printf("%-34s %,14d bytes %,8d bytes/node%n", "ColumnarTree", withColumnar - before, (withColumnar - before) / size);
+        } finally {
+            SyntheticProject.delete(projectDir);
+        }
+    }
+
+    private static Node analyze(Path projectDir) {
+        File rootFile = projectDir.toFile();
+        Node root = new Node(new LinkedList<>(), rootFile.getPath(), rootFile.getName(), "");
+        DependencyTree dependencyTree = new DependencyTree(SyntheticProject.BASEPACKAGE, SyntheticProject.BASEPACKAGE_DOT, root);
+        dependencyTree.createTree(root);
+        dependencyTree.setDependencies(root);
+        root.setDependencies(new LinkedList<>());
+        dependencyTree.sortTree(root);
+        dependencyTree.setLayer(root);
+        root.freeze();
+        return root;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        // the worker threads of the ForkJoinPools of DependencyTree keep references to their last tasks until they end
+        Thread.sleep(1000);
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
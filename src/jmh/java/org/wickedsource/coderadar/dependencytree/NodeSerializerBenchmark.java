@@ -0,0 +1,101 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing an analyzed tree as JSON with NodeSerializer and CompactNodeSerializer, as /getTree does. The JSON
+ * is written to a stream which only counts the bytes, so the benchmark does not measure buffering the document.
+ * Format columnar writes the same tree as a ColumnarTree with NodeSerializer, which derives the dependencies of every
+ * package while writing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class NodeSerializerBenchmark {
+
+    @Param({"full", "compact", "columnar"})
+    private String format;
+
+    @Param("-1")
+    private int depth;
+
+    @Param("8")
+    private int imports;
+
+    @Param("0.0")
+    private double wildcardRatio;
+
+    private Path projectDir;
+    private Node root;
+    private ColumnarTree columnarTree;
+    private ObjectMapper objectMapper;
+    private ObjectWriter objectWriter;
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        projectDir = Files.createTempDirectory("dependencytree-benchmark");
+        new SyntheticProject(50, 40, imports, wildcardRatio).write(projectDir);
+        File rootFile = projectDir.toFile();
+        root = new Node(new LinkedList<>(), rootFile.getPath(), rootFile.getName(), "");
+        DependencyTree dependencyTree = new DependencyTree(SyntheticProject.BASEPACKAGE, SyntheticProject.BASEPACKAGE_DOT, root);
+        dependencyTree.createTree(root);
+        dependencyTree.setDependencies(root);
+        root.setDependencies(new LinkedList<>());
+        dependencyTree.sortTree(root);
+        dependencyTree.setLayer(root);
+        root.freeze();
+        columnarTree = ColumnarTree.of(root);
+
+        objectMapper = new ObjectMapper();
+        SimpleModule simpleModule = new SimpleModule();
+        simpleModule.addSerializer(Node.class, format.equals("compact") ? new CompactNodeSerializer() : new NodeSerializer());
+        objectMapper.registerModule(simpleModule);
+        objectMapper.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        objectWriter = objectMapper.writer().withAttribute(NodeSerializer.MAX_DEPTH, depth);
+    }
+
+    @Benchmark
+    public long serialize() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        if (format.equals("columnar")) {
+            try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+                NodeSerializer.writeTree(columnarTree, columnarTree.getRoot(), depth, gen);
+            }
+        } else {
+            objectWriter.writeValue(out, root);
+        }
+        return out.count;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteProject() throws IOException {
+        SyntheticProject.delete(projectDir);
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import org.openjdk.jmh.annotations.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the throughput of DependencyTree.setDependencies scales with the number of parsing threads and how
+ * much scanning only imports saves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SetDependenciesBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    private int parallelism;
+
+    @Param({"FULL", "IMPORTS_ONLY"})
+    private AnalysisDepth analysisDepth;
+
+    @Param("8")
+    private int imports;
+
+    @Param("0.0")
+    private double wildcardRatio;
+
+    private Path projectDir;
+    private Node root;
+    private DependencyTree dependencyTree;
+
+    @Setup(Level.Trial)
+    public void createProject() throws IOException {
+        projectDir = Files.createTempDirectory("dependencytree-benchmark");
+        new SyntheticProject(50, 40, imports, wildcardRatio).write(projectDir);
+    }
+
+    @Setup(Level.Invocation)
+    public void createTree() {
+        File rootFile = projectDir.toFile();
+        root = new Node(new LinkedList<>(), rootFile.getPath(), rootFile.getName(), "");
+        dependencyTree = new DependencyTree(SyntheticProject.BASEPACKAGE, SyntheticProject.BASEPACKAGE_DOT, root, parallelism);
+        dependencyTree.setAnalysisDepth(analysisDepth);
+        dependencyTree.createTree(root);
+    }
+
+    @Benchmark
+    public Node setDependencies() {
+        dependencyTree.setDependencies(root);
+        return root;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteProject() throws IOException {
+        SyntheticProject.delete(projectDir);
+    }
+}
@@ -0,0 +1,59 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures DependencyTree.setLayer on a sorted tree. Wildcard imports add many dependencies between the classes of
+ * a package, which makes the cycles setLayer finds larger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SetLayerBenchmark {
+
+    @Param({"40", "300"})
+    private int classes;
+
+    @Param("8")
+    private int imports;
+
+    @Param({"0.0", "0.25"})
+    private double wildcardRatio;
+
+    private Path projectDir;
+    private Node root;
+    private DependencyTree dependencyTree;
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        projectDir = Files.createTempDirectory("dependencytree-benchmark");
+        new SyntheticProject(10, classes, imports, wildcardRatio).write(projectDir);
+        File rootFile = projectDir.toFile();
+        root = new Node(new LinkedList<>(), rootFile.getPath(), rootFile.getName(), "");
+        dependencyTree = new DependencyTree(SyntheticProject.BASEPACKAGE, SyntheticProject.BASEPACKAGE_DOT, root);
+        dependencyTree.createTree(root);
+        dependencyTree.setDependencies(root);
+        dependencyTree.sortTree(root);
+    }
+
+    /**
+     * setLayer overwrites the layers and cycles of every node, so it can run on the same tree again
+     */
+    @Benchmark
+    public Node setLayer() {
+        dependencyTree.setLayer(root);
+        return root;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteProject() throws IOException {
+        SyntheticProject.delete(projectDir);
+    }
+}
@@ -0,0 +1,89 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares sorting the tree with NodeComparator as a plain Comparator against DependencyTree.sortTree, which counts
+ * the dependencies between siblings once in a SiblingDependencyMatrix. The project has no wildcard imports: their
+ * dependency cycles make the plain Comparator fail, see NodeComparator.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SortTreeBenchmark {
+
+    @Param({"comparator", "matrix"})
+    private String sorter;
+
+    @Param({"40", "300"})
+    private int classes;
+
+    @Param("8")
+    private int imports;
+
+    @Param("0.0")
+    private double wildcardRatio;
+
+    private Path projectDir;
+    private Node root;
+    private DependencyTree dependencyTree;
+    private Map<Node, List<Node>> unsortedChildren;
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        projectDir = Files.createTempDirectory("dependencytree-benchmark");
+        new SyntheticProject(10, classes, imports, wildcardRatio).write(projectDir);
+        File rootFile = projectDir.toFile();
+        root = new Node(new LinkedList<>(), rootFile.getPath(), rootFile.getName(), "");
+        dependencyTree = new DependencyTree(SyntheticProject.BASEPACKAGE, SyntheticProject.BASEPACKAGE_DOT, root);
+        dependencyTree.createTree(root);
+        dependencyTree.setDependencies(root);
+        unsortedChildren = new IdentityHashMap<>();
+        rememberChildren(root);
+    }
+
+    private void rememberChildren(Node node) {
+        unsortedChildren.put(node, new ArrayList<>(node.getChildren()));
+        for (Node child : node.getChildren()) {
+            rememberChildren(child);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void restoreChildren() {
+        for (Map.Entry<Node, List<Node>> entry : unsortedChildren.entrySet()) {
+            entry.getKey().setChildren(new LinkedList<>(entry.getValue()));
+        }
+    }
+
+    @Benchmark
+    public Node sortTree() {
+        if (sorter.equals("comparator")) {
+            sortWithComparator(root);
+        } else {
+            dependencyTree.sortTree(root);
+        }
+        return root;
+    }
+
+    private void sortWithComparator(Node node) {
+        if (node.hasChildren()) {
+            for (Node child : node.getChildren()) {
+                sortWithComparator(child);
+            }
+            node.getChildren().sort(new NodeComparator());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteProject() throws IOException {
+        SyntheticProject.delete(projectDir);
+    }
+}
@@ -0,0 +1,96 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Generates a java project on disk to run benchmarks against. The project has one module with the layout
+ * module/src/main/java/{BASEPACKAGE}/packageN/ClassN_M.java
+ * Every class imports a number of random classes of the project, a given share of the imports are wildcard imports
+ * of a random package. The same parameters always generate the same project.
+ */
+public class SyntheticProject {
+
+    public static final String BASEPACKAGE = "org/wickedsource/coderadar";
+    public static final String BASEPACKAGE_DOT = "org.wickedsource.coderadar";
+
+    private final int packages;
+    private final int classes;
+    private final int imports;
+    private final double wildcardRatio;
+
+    /**
+     * @param packages number of packages
+     * @param classes  number of classes in every package
+     * @param imports  number of imports of other classes in every class
+     */
+    public SyntheticProject(int packages, int classes, int imports) {
+        this(packages, classes, imports, 0);
+    }
+
+    /**
+     * @param packages      number of packages
+     * @param classes       number of classes in every package
+     * @param imports       number of imports of other classes or packages in every class
+     * @param wildcardRatio share of the imports which import a whole package, between 0 and 1
+     */
+    public SyntheticProject(int packages, int classes, int imports, double wildcardRatio) {
+        this.packages = packages;
+        this.classes = classes;
+        this.imports = imports;
+        this.wildcardRatio = wildcardRatio;
+    }
+
+    /**
+     * write the project into the given directory
+     *
+     * @param root directory to write to
+     */
+    public void write(Path root) throws IOException {
+        Random random = new Random(42);
+        Path basepackageDir = root.resolve("module/src/main/java").resolve(BASEPACKAGE);
+        for (int p = 0; p < packages; p++) {
+            Path packageDir = Files.createDirectories(basepackageDir.resolve("package" + p));
+            for (int c = 0; c < classes; c++) {
+                StringBuilder sb = new StringBuilder();
+                sb.append("package ").append(BASEPACKAGE_DOT).append(".package").append(p).append(";\n\n");
+                sb.append("import java.util.List;\n");
+                for (int i = 0; i < imports; i++) {
+                    int importedPackage = random.nextInt(packages);
+                    sb.append("import ").append(BASEPACKAGE_DOT).append(".package").append(importedPackage);
+                    // only draw a number if there are wildcard imports, so projects without them do not change
+                    if (wildcardRatio > 0 && random.nextDouble() < wildcardRatio) {
+                        sb.append(".*;\n");
+                    } else {
+                        sb.append(".Class").append(importedPackage).append('_').append(random.nextInt(classes)).append(";\n");
+                    }
+                }
+                sb.append("\n/**\n * generated class\n */\n");
+                sb.append("public class Class").append(p).append('_').append(c).append(" {\n");
+                sb.append("    // a comment with ").append(BASEPACKAGE_DOT).append(".package0.Class0_0\n");
+                sb.append("    private String name = \"").append(BASEPACKAGE_DOT).append(".package0.Class0_0\";\n");
+                sb.append("    private ").append(BASEPACKAGE_DOT).append(".package").append(random.nextInt(packages))
+                        .append(".Class0_0 field;\n");
+                sb.append("}\n");
+                Files.write(packageDir.resolve("Class" + p + "_" + c + ".java"), sb.toString().getBytes());
+            }
+        }
+    }
+
+    /**
+     * delete a project written by write(Path root)
+     *
+     * @param root directory to delete
+     */
+    public static void delete(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package org.wickedsource.coderadar.dependencytree;
+
+/**
+ * How much of a source file SourceScanner looks at.
+ */
+public enum AnalysisDepth {
+
+    /**
+     * only imports; reading a file stops at the end of its import area, usually the first type declaration
+     */
+    IMPORTS_ONLY,
+
+    /**
+     * imports and fully qualified class name usages in the rest of the file
+     */
+    FULL
+}
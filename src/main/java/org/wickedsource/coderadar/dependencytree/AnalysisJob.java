@@ -0,0 +1,150 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.UUID;
+
+/**
+ * Analysis of a project running in the background. The status of a job is written as JSON by /jobs, the analyzed
+ * tree is kept in the job until the job is evicted, see AnalysisJobs.
+ */
+@JsonPropertyOrder({"id", "projectDir", "basePackage", "state", "phase", "filesDiscovered", "filesParsed",
+        "nodesSorted", "nodesLayered", "submittedMillis", "finishedMillis", "buildMillis", "error"})
+public class AnalysisJob {
+
+    public enum State {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    // progress of a job which did not have to analyze its project, because its tree was up to date
+    private static final AnalysisProgress NOT_ANALYZED = new AnalysisProgress();
+
+    private final String id;
+    private final Project project;
+    private final long submittedMillis;
+    private volatile State state = State.QUEUED;
+    private volatile AnalysisProgress progress = NOT_ANALYZED;
+    private volatile TreeSnapshot result;
+    private volatile String error;
+    private volatile long finishedMillis;
+
+    public AnalysisJob(Project project) {
+        this.id = UUID.randomUUID().toString();
+        this.project = project;
+        this.submittedMillis = System.currentTimeMillis();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    @JsonIgnore
+    public Project getProject() {
+        return project;
+    }
+
+    public String getProjectDir() {
+        return project.getRootDir().toString();
+    }
+
+    public String getBasePackage() {
+        return project.getBasepackage_dot();
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return true if the job is done or failed
+     */
+    @JsonIgnore
+    public boolean isFinished() {
+        return state == State.DONE || state == State.FAILED;
+    }
+
+    /**
+     * @return DONE or FAILED once the job has finished, the phase of its progress before. A job may have joined a
+     * build which was finishing when the job asked the project for its progress; the job then got the progress of
+     * the next build, which stays QUEUED, so the progress does not tell if the job has finished.
+     */
+    public AnalysisProgress.Phase getPhase() {
+        State current = state;
+        if (current == State.DONE) {
+            return AnalysisProgress.Phase.DONE;
+        } else if (current == State.FAILED) {
+            return AnalysisProgress.Phase.FAILED;
+        }
+        return progress.getPhase();
+    }
+
+    public long getFilesDiscovered() {
+        return progress.getFilesDiscovered();
+    }
+
+    public long getFilesParsed() {
+        return progress.getFilesParsed();
+    }
+
+    public long getNodesSorted() {
+        return progress.getNodesSorted();
+    }
+
+    public long getNodesLayered() {
+        return progress.getNodesLayered();
+    }
+
+    public long getSubmittedMillis() {
+        return submittedMillis;
+    }
+
+    /**
+     * @return time the job finished, 0 while it is running
+     */
+    public long getFinishedMillis() {
+        return finishedMillis;
+    }
+
+    /**
+     * @return time it took to build the tree, 0 if the job is not done
+     */
+    public long getBuildMillis() {
+        TreeSnapshot current = result;
+        return current != null ? current.getBuildMillis() : 0;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return analyzed tree, null if the job is not done
+     */
+    @JsonIgnore
+    public TreeSnapshot getResult() {
+        return result;
+    }
+
+    /**
+     * start the job
+     *
+     * @param progress progress of the analysis the job runs or waits for
+     */
+    public void start(AnalysisProgress progress) {
+        this.progress = progress;
+        state = State.RUNNING;
+    }
+
+    public void finish(TreeSnapshot result) {
+        this.result = result;
+        finishedMillis = System.currentTimeMillis();
+        state = State.DONE;
+    }
+
+    public void fail(String error) {
+        this.error = error;
+        finishedMillis = System.currentTimeMillis();
+        state = State.FAILED;
+    }
+}
@@ -0,0 +1,82 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Analysis jobs by id, safe to use from multiple threads. A project has at most one unfinished job, submitting
+ * another one returns it. Finished jobs keep their tree until they are evicted: after retentionMillis, or if more
+ * than maxRetained jobs are finished, starting with the oldest. Unfinished jobs are never evicted.
+ */
+public class AnalysisJobs {
+
+    private final int maxRetained;
+    private final long retentionMillis;
+    // submission order makes the first entries the oldest jobs
+    private final LinkedHashMap<String, AnalysisJob> jobs = new LinkedHashMap<>();
+
+    /**
+     * @param maxRetained     maximum number of finished jobs kept
+     * @param retentionMillis time after which a finished job is evicted; 0 or less keeps finished jobs
+     */
+    public AnalysisJobs(int maxRetained, long retentionMillis) {
+        this.maxRetained = maxRetained;
+        this.retentionMillis = retentionMillis;
+    }
+
+    /**
+     * submit a job for a project unless one is queued or running for it
+     *
+     * @param project  project to analyze
+     * @param run      runs the job
+     * @param executor executes new jobs
+     * @return the new or unfinished job of the project
+     */
+    public synchronized AnalysisJob submit(Project project, Consumer<AnalysisJob> run, Executor executor) {
+        evict();
+        for (AnalysisJob job : jobs.values()) {
+            if (!job.isFinished() && job.getProject().getKey().equals(project.getKey())) {
+                return job;
+            }
+        }
+        AnalysisJob job = new AnalysisJob(project);
+        jobs.put(job.getId(), job);
+        executor.execute(() -> run.accept(job));
+        return job;
+    }
+
+    /**
+     * @return the job, null if it is unknown or has been evicted
+     */
+    public synchronized AnalysisJob get(String id) {
+        evict();
+        return jobs.get(id);
+    }
+
+    public synchronized int size() {
+        return jobs.size();
+    }
+
+    private void evict() {
+        long expired = System.currentTimeMillis() - retentionMillis;
+        List<AnalysisJob> finished = new ArrayList<>();
+        Iterator<AnalysisJob> iterator = jobs.values().iterator();
+        while (iterator.hasNext()) {
+            AnalysisJob job = iterator.next();
+            if (job.isFinished()) {
+                if (retentionMillis > 0 && job.getFinishedMillis() < expired) {
+                    iterator.remove();
+                } else {
+                    finished.add(job);
+                }
+            }
+        }
+        for (int i = 0; i < finished.size() - maxRetained; i++) {
+            jobs.remove(finished.get(i).getId());
+        }
+    }
+}
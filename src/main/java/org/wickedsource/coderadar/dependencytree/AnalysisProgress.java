@@ -0,0 +1,148 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress of the analysis of a project, updated by DependencyTree while it runs and safe to read from other threads.
+ * The time spent in every phase is measured between the calls of setPhase, which are made by the analyzing thread.
+ */
+public class AnalysisProgress {
+
+    public enum Phase {
+        QUEUED, CREATE_TREE, SET_DEPENDENCIES, SORT_TREE, SET_LAYER, DONE, FAILED
+    }
+
+    private volatile Phase phase = Phase.QUEUED;
+    private final LongAdder filesDiscovered = new LongAdder();
+    private final LongAdder filesParsed = new LongAdder();
+    private final LongAdder nodesSorted = new LongAdder();
+    private final LongAdder nodesLayered = new LongAdder();
+    private final LongAdder nodesCreated = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder edgesFound = new LongAdder();
+    private final LongAdder parseNanos = new LongAdder();
+    private final LongAdder resolveNanos = new LongAdder();
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private long phaseStart = System.nanoTime();
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * end the current phase and start the next one
+     */
+    public void setPhase(Phase phase) {
+        long now = System.nanoTime();
+        phaseNanos[this.phase.ordinal()] += now - phaseStart;
+        phaseStart = now;
+        this.phase = phase;
+    }
+
+    /**
+     * @return time spent in a phase which has ended, read it on the analyzing thread
+     */
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * @return true if the analysis is done or failed
+     */
+    public boolean isFinished() {
+        return phase == Phase.DONE || phase == Phase.FAILED;
+    }
+
+    /**
+     * @return number of source files found by createTree
+     */
+    public long getFilesDiscovered() {
+        return filesDiscovered.sum();
+    }
+
+    /**
+     * @return number of source files whose dependencies have been read by setDependencies
+     */
+    public long getFilesParsed() {
+        return filesParsed.sum();
+    }
+
+    /**
+     * @return number of nodes whose children have been sorted by sortTree
+     */
+    public long getNodesSorted() {
+        return nodesSorted.sum();
+    }
+
+    /**
+     * @return number of nodes placed on a layer by setLayer
+     */
+    public long getNodesLayered() {
+        return nodesLayered.sum();
+    }
+
+    /**
+     * @return number of nodes created by createTree, files and directories
+     */
+    public long getNodesCreated() {
+        return nodesCreated.sum();
+    }
+
+    /**
+     * @return number of bytes of source files read by the SourceScanner
+     */
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * @return number of dependencies of files on other files or packages found by setDependencies
+     */
+    public long getEdgesFound() {
+        return edgesFound.sum();
+    }
+
+    /**
+     * @return time spent reading and scanning files, summed over all parsing threads
+     */
+    public long getParseNanos() {
+        return parseNanos.sum();
+    }
+
+    /**
+     * @return time spent resolving the names found in files to nodes
+     */
+    public long getResolveNanos() {
+        return resolveNanos.sum();
+    }
+
+    void fileDiscovered() {
+        filesDiscovered.increment();
+    }
+
+    void nodeCreated() {
+        nodesCreated.increment();
+    }
+
+    void fileParsed(long nanos) {
+        filesParsed.increment();
+        parseNanos.add(nanos);
+    }
+
+    void fileResolved(long nanos, int edges) {
+        resolveNanos.add(nanos);
+        edgesFound.add(edges);
+    }
+
+    void bytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    void nodeSorted() {
+        nodesSorted.increment();
+    }
+
+    void nodesLayered(int count) {
+        nodesLayered.add(count);
+    }
+}
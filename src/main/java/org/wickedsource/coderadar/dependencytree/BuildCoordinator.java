@@ -0,0 +1,75 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Runs builds on the calling threads and shares them: callers asking for a key while a build for it is running wait
+ * for that build and get its result instead of starting another one. At most maxConcurrentBuilds builds run at the
+ * same time, further builds wait for a permit.
+ *
+ * @param <K> key of a build, e.g. the project directory
+ * @param <V> result of a build
+ */
+public class BuildCoordinator<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Semaphore permits;
+
+    /**
+     * @param maxConcurrentBuilds number of builds which may run at the same time
+     */
+    public BuildCoordinator(int maxConcurrentBuilds) {
+        this.permits = new Semaphore(Math.max(1, maxConcurrentBuilds), true);
+    }
+
+    /**
+     * build the value of a key or wait for the build which is already running for it
+     *
+     * @param key   key of the build
+     * @param build computes the value, only called if no build for the key is running
+     * @return result of the build
+     */
+    public V build(K key, Supplier<V> build) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            return join(running);
+        }
+        try {
+            permits.acquireUninterruptibly();
+            try {
+                future.complete(build.get());
+            } finally {
+                permits.release();
+            }
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+        } finally {
+            inFlight.remove(key, future);
+        }
+        return join(future);
+    }
+
+    /**
+     * @return true if a build for the key is running
+     */
+    public boolean isBuilding(K key) {
+        return inFlight.containsKey(key);
+    }
+
+    private V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Analyzed tree kept in arrays instead of Node objects, for repositories too large to keep a Node with three Strings,
+ * a list of children and a list of dependencies for every file and package. Nodes are numbered breadth first with
+ * the root as 0, so the children of a node are the consecutive nodes childOffsets[node] to childOffsets[node + 1] - 1.
+ *   filenames are kept once as UTF-8 bytes in a name table
+ *   paths and package names are derived from the parent: path = parent path + separator + filename and
+ *   packageName = parent packageName + "." + filename; the few nodes which do not follow this, e.g. the top level
+ *   packages of a module, keep theirs in the name table
+ *   dependencies are only kept for files, in CSR arrays: the dependencies of file f are dependencies[dependencyOffsets[f]]
+ *   to dependencies[dependencyOffsets[f + 1] - 1]
+ *   the dependencies of a package are the distinct dependencies of its files in the order of the tree, computed
+ *   whenever they are asked for; the root has no dependencies
+ * A ColumnarTree is immutable and safe to share between threads. Nodes are used as Integer handles of a TreeView.
+ */
+public class ColumnarTree implements TreeView<Integer> {
+
+    private static final char SEPARATOR = File.separatorChar;
+
+    // how the path of a node is derived, the lower two bits of kinds
+    private static final int PATH_MASK = 3;
+    private static final int PATH_CHILD = 0;
+    private static final int PATH_RELATIVE = 1;
+    private static final int PATH_ABSOLUTE = 2;
+    // how the package name of a node is derived, the next two bits of kinds
+    private static final int PACKAGE_MASK = 3 << 2;
+    private static final int PACKAGE_NONE = 0;
+    private static final int PACKAGE_TOP = 1 << 2;
+    private static final int PACKAGE_CHILD = 2 << 2;
+    private static final int PACKAGE_NAMED = 3 << 2;
+
+    private final NameTable names;
+    private final int[] filenames;
+    private final byte[] kinds;
+    private final int[] parents;
+    private final int[] childOffsets;
+    private final int[] layers;
+    private final int[] packageIds;
+    private final int[] dependencyOffsets;
+    private final int[] dependencies;
+    // names of the paths and package names which are not derived, by node
+    private final Map<Integer, Integer> pathNames;
+    private final Map<Integer, Integer> packageNames;
+    private final Map<Integer, int[][]> cycles;
+
+    private ColumnarTree(int size, NameTable names, Map<Integer, Integer> pathNames, Map<Integer, Integer> packageNames,
+                         Map<Integer, int[][]> cycles, int dependencyCount) {
+        this.names = names;
+        this.pathNames = pathNames;
+        this.packageNames = packageNames;
+        this.cycles = cycles;
+        filenames = new int[size];
+        kinds = new byte[size];
+        parents = new int[size];
+        childOffsets = new int[size + 1];
+        layers = new int[size];
+        packageIds = new int[size];
+        dependencyOffsets = new int[size + 1];
+        dependencies = new int[dependencyCount];
+    }
+
+    /**
+     * copy a tree of Node objects. The dependencies of the packages are not copied, they are derived from the files.
+     *
+     * @param root root of an analyzed tree, dependencies have to be nodes of the tree or have the path of one
+     * @return the tree as arrays
+     */
+    public static ColumnarTree of(Node root) {
+        List<Node> nodes = new ArrayList<>();
+        List<Integer> parents = new ArrayList<>();
+        Map<Node, Integer> indices = new HashMap<>();
+        nodes.add(root);
+        parents.add(-1);
+        indices.put(root, 0);
+        int dependencyCount = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            for (Node child : node.getChildren()) {
+                indices.put(child, nodes.size());
+                nodes.add(child);
+                parents.add(i);
+            }
+            if (!node.hasChildren()) {
+                dependencyCount += node.getDependencies().size();
+            }
+        }
+
+        NameTable.Builder names = new NameTable.Builder();
+        Map<Integer, Integer> pathNames = new HashMap<>();
+        Map<Integer, Integer> packageNames = new HashMap<>();
+        int[] filenames = new int[nodes.size()];
+        byte[] kinds = new byte[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            Node parent = i == 0 ? null : nodes.get(parents.get(i));
+            filenames[i] = names.add(node.getFilename());
+            kinds[i] = (byte) (pathKind(node, parent, i, pathNames, names) | packageKind(node, parent, i, packageNames, names));
+        }
+
+        ColumnarTree tree = new ColumnarTree(nodes.size(), names.build(), pathNames, packageNames, new HashMap<>(),
+                dependencyCount);
+        System.arraycopy(filenames, 0, tree.filenames, 0, filenames.length);
+        System.arraycopy(kinds, 0, tree.kinds, 0, kinds.length);
+        Map<String, Integer> packageIds = new HashMap<>();
+        int dependencyOffset = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            tree.parents[i] = parents.get(i);
+            tree.layers[i] = node.getLayer();
+            tree.packageIds[i] = node.hasChildren() && !node.getPackageName().isEmpty()
+                    ? packageIds.computeIfAbsent(node.getPackageName(), key -> packageIds.size()) : -1;
+            // children were numbered right after the children of the previous node
+            tree.childOffsets[i + 1] = (i == 0 ? 1 : tree.childOffsets[i]) + node.getChildren().size();
+            tree.dependencyOffsets[i] = dependencyOffset;
+            if (!node.hasChildren()) {
+                for (Node dependency : node.getDependencies()) {
+                    tree.dependencies[dependencyOffset++] = indices.get(dependency);
+                }
+            }
+            if (!node.getCycles().isEmpty()) {
+                int[][] nodeCycles = new int[node.getCycles().size()][];
+                for (int c = 0; c < nodeCycles.length; c++) {
+                    nodeCycles[c] = node.getCycles().get(c).stream().mapToInt(indices::get).toArray();
+                }
+                tree.cycles.put(i, nodeCycles);
+            }
+        }
+        tree.childOffsets[0] = 1;
+        tree.dependencyOffsets[nodes.size()] = dependencyOffset;
+        return tree;
+    }
+
+    private static int pathKind(Node node, Node parent, int index, Map<Integer, Integer> pathNames, NameTable.Builder names) {
+        String path = node.getPath();
+        if (parent != null && path.startsWith(parent.getPath())) {
+            String rest = path.substring(parent.getPath().length());
+            if (rest.length() == node.getFilename().length() + 1 && rest.charAt(0) == SEPARATOR && rest.endsWith(node.getFilename())) {
+                return PATH_CHILD;
+            }
+            pathNames.put(index, names.add(rest));
+            return PATH_RELATIVE;
+        }
+        pathNames.put(index, names.add(path));
+        return PATH_ABSOLUTE;
+    }
+
+    private static int packageKind(Node node, Node parent, int index, Map<Integer, Integer> packageNames, NameTable.Builder names) {
+        String packageName = node.getPackageName();
+        if (packageName.isEmpty()) {
+            return PACKAGE_NONE;
+        }
+        if (parent != null && parent.getPackageName().isEmpty() && packageName.equals(node.getFilename())) {
+            return PACKAGE_TOP;
+        }
+        if (parent != null && packageName.length() == parent.getPackageName().length() + 1 + node.getFilename().length()
+                && packageName.startsWith(parent.getPackageName()) && packageName.endsWith(node.getFilename())
+                && packageName.charAt(parent.getPackageName().length()) == '.') {
+            return PACKAGE_CHILD;
+        }
+        packageNames.put(index, names.add(packageName));
+        return PACKAGE_NAMED;
+    }
+
+    /**
+     * @return the root node, 0
+     */
+    public Integer getRoot() {
+        return 0;
+    }
+
+    /**
+     * @return number of nodes
+     */
+    public int size() {
+        return filenames.length;
+    }
+
+    @Override
+    public String getFilename(Integer node) {
+        return names.get(filenames[node]);
+    }
+
+    @Override
+    public String getPath(Integer node) {
+        switch (kinds[node] & PATH_MASK) {
+            case PATH_CHILD:
+                return getPath(parents[node]) + SEPARATOR + getFilename(node);
+            case PATH_RELATIVE:
+                return getPath(parents[node]) + names.get(pathNames.get(node));
+            default:
+                return names.get(pathNames.get(node));
+        }
+    }
+
+    @Override
+    public String getPackageName(Integer node) {
+        switch (kinds[node] & PACKAGE_MASK) {
+            case PACKAGE_NONE:
+                return "";
+            case PACKAGE_TOP:
+                return getFilename(node);
+            case PACKAGE_CHILD:
+                return getPackageName(parents[node]) + "." + getFilename(node);
+            default:
+                return names.get(packageNames.get(node));
+        }
+    }
+
+    @Override
+    public int getLayer(Integer node) {
+        return layers[node];
+    }
+
+    @Override
+    public List<Integer> getChildren(Integer node) {
+        return new IntRange(childOffsets[node], childOffsets[node + 1]);
+    }
+
+    @Override
+    public boolean hasChildren(Integer node) {
+        return childOffsets[node + 1] > childOffsets[node];
+    }
+
+    /**
+     * the dependencies of a package are collected from its files on every call, so callers should not ask for them
+     * more than once
+     */
+    @Override
+    public List<Integer> getDependencies(Integer node) {
+        if (!hasChildren(node)) {
+            return new IntSlice(dependencies, dependencyOffsets[node], dependencyOffsets[node + 1]);
+        }
+        if (node == 0) {
+            return Collections.emptyList();
+        }
+        int[] distinct = new int[16];
+        int count = 0;
+        BitSet seen = new BitSet(size());
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            int current = stack.pop();
+            if (!hasChildren(current)) {
+                for (int i = dependencyOffsets[current]; i < dependencyOffsets[current + 1]; i++) {
+                    if (!seen.get(dependencies[i])) {
+                        seen.set(dependencies[i]);
+                        if (count == distinct.length) {
+                            distinct = Arrays.copyOf(distinct, count * 2);
+                        }
+                        distinct[count++] = dependencies[i];
+                    }
+                }
+            }
+            // pushed in reverse, so the children are visited in order
+            for (int child = childOffsets[current + 1] - 1; child >= childOffsets[current]; child--) {
+                stack.push(child);
+            }
+        }
+        return new IntSlice(distinct, 0, count);
+    }
+
+    @Override
+    public List<List<Integer>> getCycles(Integer node) {
+        int[][] nodeCycles = cycles.get(node);
+        if (nodeCycles == null) {
+            return Collections.emptyList();
+        }
+        List<List<Integer>> result = new ArrayList<>(nodeCycles.length);
+        for (int[] cycle : nodeCycles) {
+            result.add(new IntSlice(cycle, 0, cycle.length));
+        }
+        return result;
+    }
+
+    @Override
+    public Integer getParent(Integer node) {
+        return parents[node] >= 0 ? parents[node] : null;
+    }
+
+    @Override
+    public int getPackageId(Integer node) {
+        return packageIds[node];
+    }
+
+    /**
+     * @return index of the node
+     */
+    @Override
+    public int getId(Integer node) {
+        return node;
+    }
+
+    /**
+     * unmodifiable list of the ints from to to - 1
+     */
+    private static class IntRange extends AbstractList<Integer> implements RandomAccess {
+
+        private final int from;
+        private final int to;
+
+        IntRange(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Integer get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("index " + index + ", size " + (to - from));
+            }
+            return from + index;
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+
+    /**
+     * unmodifiable list of a part of an int array
+     */
+    private static class IntSlice extends AbstractList<Integer> implements RandomAccess {
+
+        private final int[] values;
+        private final int from;
+        private final int to;
+
+        IntSlice(int[] values, int from, int to) {
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Integer get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("index " + index + ", size " + (to - from));
+            }
+            return values[from + index];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+
+    /**
+     * distinct strings kept as UTF-8 bytes in one array, a String is only created when a name is read
+     */
+    private static class NameTable {
+
+        private final byte[] bytes;
+        private final int[] offsets;
+
+        NameTable(byte[] bytes, int[] offsets) {
+            this.bytes = bytes;
+            this.offsets = offsets;
+        }
+
+        String get(int index) {
+            return new String(bytes, offsets[index], offsets[index + 1] - offsets[index], StandardCharsets.UTF_8);
+        }
+
+        static class Builder {
+
+            private final Map<String, Integer> indices = new HashMap<>();
+            private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            private int[] offsets = new int[16];
+
+            /**
+             * @return index of the name, names which have been added before keep their index
+             */
+            int add(String name) {
+                return indices.computeIfAbsent(name, key -> {
+                    int index = indices.size();
+                    byte[] encoded = key.getBytes(StandardCharsets.UTF_8);
+                    bytes.write(encoded, 0, encoded.length);
+                    if (index + 2 > offsets.length) {
+                        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                    }
+                    offsets[index + 1] = bytes.size();
+                    return index;
+                });
+            }
+
+            NameTable build() {
+                return new NameTable(bytes.toByteArray(), Arrays.copyOf(offsets, indices.size() + 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a tree as a table of nodes instead of nested objects. Every node is written once and gets the id of its
+ * position in the table (pre-order, the root has id 0). Children, dependencies and cycles are written as arrays of
+ * ids, so the path of a node is not repeated for every dependency on it.
+ *
+ * {"format":"compact","nodes":[{"id":0,"filename":"...","path":"...","packageName":"...","layer":0,
+ *   "children":[1,2],"dependencies":[3],"cycles":[[1,2]]},...],
+ *   "references":[{"id":3,"filename":"...","path":"...","packageName":"..."}]}
+ *
+ * The depth can be limited with the attribute NodeSerializer.MAX_DEPTH. Nodes at that depth are collapsed, see
+ * NodeSerializer. Dependencies on nodes which are not written, because they are outside of the written package or
+ * below the depth limit, get ids after the nodes and are written to the references table without children.
+ */
+public class CompactNodeSerializer extends StdSerializer<Node> {
+
+    private static final long serialVersionUID = 1L;
+
+    public CompactNodeSerializer() {
+        this(null);
+    }
+
+    public CompactNodeSerializer(Class<Node> t) {
+        super(t);
+    }
+
+    @Override
+    public void serialize(Node root, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        List<Node> nodes = new ArrayList<>();
+        Map<Node, Integer> ids = new HashMap<>();
+        addNodes(root, NodeSerializer.getMaxDepth(provider), nodes, ids);
+        // dependencies on nodes which are not written, numbered after the nodes when they are first referenced
+        List<Node> references = new ArrayList<>();
+        Map<Node, Integer> referenceIds = new HashMap<>();
+
+        gen.writeStartObject();
+        gen.writeStringField("format", "compact");
+        gen.writeArrayFieldStart("nodes");
+        for (int id = 0; id < nodes.size(); id++) {
+            Node node = nodes.get(id);
+            // children of a node are either all written or none
+            boolean collapsed = node.hasChildren() && !ids.containsKey(node.getChildren().get(0));
+            gen.writeStartObject();
+            gen.writeNumberField("id", id);
+            gen.writeStringField("filename", node.getFilename());
+            gen.writeStringField("path", node.getPath());
+            gen.writeStringField("packageName", node.getPackageName());
+            gen.writeNumberField("layer", node.getLayer());
+            gen.writeArrayFieldStart("children");
+            if (!collapsed) {
+                for (Node child : node.getChildren()) {
+                    gen.writeNumber(ids.get(child));
+                }
+            }
+            gen.writeEndArray();
+            gen.writeArrayFieldStart("dependencies");
+            if (!collapsed) {
+                for (Node dependency : node.getDependencies()) {
+                    Integer dependencyId = ids.get(dependency);
+                    if (dependencyId == null) {
+                        dependencyId = referenceIds.get(dependency);
+                    }
+                    if (dependencyId == null) {
+                        dependencyId = nodes.size() + references.size();
+                        referenceIds.put(dependency, dependencyId);
+                        references.add(dependency);
+                    }
+                    gen.writeNumber(dependencyId);
+                }
+            }
+            gen.writeEndArray();
+            if (collapsed) {
+                gen.writeBooleanField("collapsed", true);
+                gen.writeNumberField("childCount", node.getChildren().size());
+                gen.writeNumberField("dependencyCount", node.getDependencies().size());
+            } else if (!node.getCycles().isEmpty()) {
+                gen.writeArrayFieldStart("cycles");
+                for (List<Node> cycle : node.getCycles()) {
+                    gen.writeStartArray();
+                    for (Node member : cycle) {
+                        gen.writeNumber(ids.get(member));
+                    }
+                    gen.writeEndArray();
+                }
+                gen.writeEndArray();
+            }
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+        gen.writeArrayFieldStart("references");
+        for (int i = 0; i < references.size(); i++) {
+            Node reference = references.get(i);
+            gen.writeStartObject();
+            gen.writeNumberField("id", nodes.size() + i);
+            gen.writeStringField("filename", reference.getFilename());
+            gen.writeStringField("path", reference.getPath());
+            gen.writeStringField("packageName", reference.getPackageName());
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    /**
+     * number all nodes of a tree in pre-order
+     *
+     * @param depthLeft number of levels of children to number below the node, negative for all
+     */
+    private void addNodes(Node node, int depthLeft, List<Node> nodes, Map<Node, Integer> ids) {
+        ids.put(node, nodes.size());
+        nodes.add(node);
+        if (depthLeft != 0) {
+            for (Node child : node.getChildren()) {
+                addNodes(child, depthLeft - 1, nodes, ids);
+            }
+        }
+    }
+}
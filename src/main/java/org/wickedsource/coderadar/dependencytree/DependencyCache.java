@@ -0,0 +1,251 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Cache of the dependencies found in every file, so unchanged files are not parsed again. An entry is keyed by the
+ * path of the file and is valid as long as
+ *   modification time and size of the file did not change or
+ *   the content hash of the bytes the scanner reads did not change, see SourceScanner.scan(Path, CRC32, LongPredicate)
+ * The cache can be saved to and loaded from disk to survive restarts. It is safe to use from multiple threads.
+ * Only parsing is saved: an analysis still lists all directories, reads the attributes of every file, resolves every
+ * dependency in the new tree and sorts and layers the whole tree. TreeUpdate uses the cache to update a tree
+ * instead, it finds the files whose dependencies resolve differently after files were added or deleted with
+ * getReferencingFiles.
+ */
+public class DependencyCache {
+
+    // 3: static imports and qualified constructor calls are scanned, cached scans of older versions miss them
+    // 4: qualified annotations with arguments are scanned, cached scans of older versions miss them
+    // 5: the hash covers the bytes the scanner read, only the head of a file with AnalysisDepth.IMPORTS_ONLY
+    private static final int FORMAT_VERSION = 5;
+
+    private final String basepackage_dot;
+    private final AnalysisDepth depth;
+    private final Map<String, Entry> entries;
+    private volatile boolean modified;
+    // paths of the files by each dependency they have, built by the first call of getReferencingFiles and kept up to
+    // date with the entries from then on
+    private volatile NavigableMap<String, Set<String>> referencingFiles;
+
+    /**
+     * @param basepackage_dot base package the cached dependencies were filtered by
+     */
+    public DependencyCache(String basepackage_dot) {
+        this(basepackage_dot, AnalysisDepth.FULL);
+    }
+
+    /**
+     * @param basepackage_dot base package the cached dependencies were filtered by
+     * @param depth           analysis depth of the scanner the cache is used with
+     */
+    public DependencyCache(String basepackage_dot, AnalysisDepth depth) {
+        this.basepackage_dot = basepackage_dot;
+        this.depth = depth;
+        this.entries = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * get the dependencies of a file from the cache or parse the file if it is new or changed
+     *
+     * @param file    java source file
+     * @param scanner scanner used to parse the file
+     * @return List of package and file names the file has dependencies on
+     */
+    public List<String> getDependencies(Path file, SourceScanner scanner) throws IOException {
+        String key = file.toString();
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.lastModified == lastModified && entry.size == size) {
+            return entry.dependencies;
+        }
+        // the scanner reads the file into its own buffer and hashes it there; it only scans the file if the hash changed
+        CRC32 crc = new CRC32();
+        List<String> scanned = scanner.scan(file, crc, hash -> entry != null && entry.hash == hash);
+        // null if touched but not changed
+        List<String> dependencies = scanned != null ? Collections.unmodifiableList(scanned) : entry.dependencies;
+        entries.put(key, new Entry(lastModified, size, crc.getValue(), dependencies));
+        modified = true;
+        if (referencingFiles != null && (entry == null || entry.dependencies != dependencies)) {
+            updateReferencingFiles(key, entry != null ? entry.dependencies : Collections.emptyList(), dependencies);
+        }
+        return dependencies;
+    }
+
+    /**
+     * remove all entries of files which are not in the given collection, e.g. because they have been deleted
+     *
+     * @param paths paths of all files which are still part of the project
+     */
+    public void retainAll(Collection<String> paths) {
+        Set<String> retained = paths instanceof Set ? (Set<String>) paths : new HashSet<>(paths);
+        if (entries.keySet().retainAll(retained)) {
+            modified = true;
+            synchronized (this) {
+                // built again when it is needed
+                referencingFiles = null;
+            }
+        }
+    }
+
+    /**
+     * remove the entries of files which have been deleted
+     *
+     * @param paths paths of the deleted files
+     */
+    public void removeAll(Collection<String> paths) {
+        for (String path : paths) {
+            Entry entry = entries.remove(path);
+            if (entry != null) {
+                modified = true;
+                if (referencingFiles != null) {
+                    updateReferencingFiles(path, entry.dependencies, Collections.emptyList());
+                }
+            }
+        }
+    }
+
+    /**
+     * find the files which have a dependency on a name, e.g. to resolve their dependencies again after a class with
+     * the name was added or deleted
+     *
+     * @param name qualified name of a class, or of a package followed by ".*"
+     * @return paths of the files with a dependency on the name or on a name nested in it, like a nested class, a
+     * member or a wildcard import of the members of a class
+     */
+    public synchronized Set<String> getReferencingFiles(String name) {
+        if (referencingFiles == null) {
+            NavigableMap<String, Set<String>> files = new TreeMap<>();
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                for (String dependency : e.getValue().dependencies) {
+                    files.computeIfAbsent(dependency, key -> new HashSet<>()).add(e.getKey());
+                }
+            }
+            referencingFiles = files;
+        }
+        Set<String> files = new HashSet<>();
+        // the name and all names continuing with a '.' sort before the name followed by '/', the character after '.';
+        // so do names continuing with a character before '.', like '$', which only adds files to check
+        for (Set<String> paths : referencingFiles.subMap(name, true, name + "/", false).values()) {
+            files.addAll(paths);
+        }
+        return files;
+    }
+
+    private synchronized void updateReferencingFiles(String path, List<String> removed, List<String> added) {
+        if (referencingFiles == null) {
+            return;
+        }
+        for (String dependency : removed) {
+            Set<String> paths = referencingFiles.get(dependency);
+            if (paths != null && paths.remove(path) && paths.isEmpty()) {
+                referencingFiles.remove(dependency);
+            }
+        }
+        for (String dependency : added) {
+            referencingFiles.computeIfAbsent(dependency, key -> new HashSet<>()).add(path);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return true if entries were added, changed or removed since the cache was created, loaded or saved
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * save the cache to a file
+     *
+     * @param cacheFile file to write to
+     */
+    public void save(Path cacheFile) throws IOException {
+        Path tempFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(basepackage_dot);
+            out.writeUTF(depth.name());
+            Map<String, Entry> snapshot = new HashMap<>(entries);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, Entry> e : snapshot.entrySet()) {
+                Entry entry = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(entry.lastModified);
+                out.writeLong(entry.size);
+                out.writeLong(entry.hash);
+                out.writeInt(entry.dependencies.size());
+                for (String dependency : entry.dependencies) {
+                    out.writeUTF(dependency);
+                }
+            }
+        }
+        Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+        modified = false;
+    }
+
+    /**
+     * load a cache from a file. If the file does not exist, is unreadable or was written for another base package or
+     * analysis depth an empty cache is returned.
+     *
+     * @param cacheFile       file to read from
+     * @param basepackage_dot base package the cache is used for
+     * @param depth           analysis depth of the scanner the cache is used with
+     * @return loaded DependencyCache
+     */
+    public static DependencyCache load(Path cacheFile, String basepackage_dot, AnalysisDepth depth) {
+        DependencyCache cache = new DependencyCache(basepackage_dot, depth);
+        if (!Files.isRegularFile(cacheFile)) {
+            return cache;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (in.readInt() != FORMAT_VERSION || !in.readUTF().equals(basepackage_dot) || !in.readUTF().equals(depth.name())) {
+                return cache;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                long lastModified = in.readLong();
+                long size = in.readLong();
+                long hash = in.readLong();
+                int dependencyCount = in.readInt();
+                List<String> dependencies = new ArrayList<>(dependencyCount);
+                for (int j = 0; j < dependencyCount; j++) {
+                    dependencies.add(in.readUTF());
+                }
+                cache.entries.put(key, new Entry(lastModified, size, hash, Collections.unmodifiableList(dependencies)));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            cache.entries.clear();
+        }
+        return cache;
+    }
+
+    private static class Entry {
+
+        final long lastModified;
+        final long size;
+        final long hash;
+        final List<String> dependencies;
+
+        Entry(long lastModified, long size, long hash, List<String> dependencies) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.hash = hash;
+            this.dependencies = dependencies;
+        }
+    }
+}
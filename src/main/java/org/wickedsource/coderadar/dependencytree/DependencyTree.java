@@ -1,12 +1,15 @@
 package org.wickedsource.coderadar.dependencytree;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class DependencyTree {
@@ -14,303 +17,435 @@ public class DependencyTree {
     private String basepackage;
     private String basepackage_dot;
     private Node baseroot;
-    private RegexPatternCache cache;
+    private SourceScanner scanner;
+    private Charset charset;
+    private AnalysisDepth analysisDepth;
+    private int parallelism;
+    private NodeIndex index;
+    private DependencyCache dependencyCache;
+    private AnalysisProgress progress;
+    // modification times of the directories listed and the source files found by createTree, by path
+    private final Map<String, Long> modificationTimes = new ConcurrentHashMap<>();
 
     public DependencyTree(String basepackage, String basepackage_dot, Node baseroot) {
+        this(basepackage, basepackage_dot, baseroot, 1);
+    }
+
+    /**
+     * @param parallelism number of threads used to parse files in setDependencies; 1 parses on the calling thread
+     */
+    public DependencyTree(String basepackage, String basepackage_dot, Node baseroot, int parallelism) {
         this.basepackage = basepackage;
         this.basepackage_dot = basepackage_dot;
         this.baseroot = baseroot;
-        cache = new RegexPatternCache();
+        this.parallelism = parallelism;
+        charset = StandardCharsets.UTF_8;
+        analysisDepth = AnalysisDepth.FULL;
+        scanner = new SourceScanner(basepackage_dot, charset, analysisDepth);
+        progress = new AnalysisProgress();
     }
 
     /**
-     * set all dependencies for a given Node object including fully qualified class name usages, imports and wildcard imports
+     * set all dependencies for a given Node object including fully qualified class name usages, imports and wildcard imports.
+     * If parallelism is greater than 1 all files are parsed in a ForkJoinPool first and the results are merged into the
+     * tree afterwards in the same order as the sequential walk does.
+     * Only files get dependencies, the dependencies of packages are derived from their files, see Node.getDependencies().
      *
      * @param root Node object to set dependencies for
      * @return Node which has its dependencies set
      */
     public void setDependencies(Node root) {
+        if (index == null) {
+            index = new NodeIndex(baseroot);
+        }
+        long bytesRead = scanner.getBytesRead();
+        if (parallelism > 1) {
+            Iterator<List<String>> parsedFiles = parseFiles(root).iterator();
+            setDependencies(root, file -> parsedFiles.next());
+        } else {
+            setDependencies(root, this::getDependenciesFromFile);
+        }
+        progress.bytesRead(scanner.getBytesRead() - bytesRead);
+        if (dependencyCache != null && root == baseroot) {
+            // forget files which have been deleted since the last analysis
+            List<Node> files = new ArrayList<>();
+            collectFiles(root, files);
+            dependencyCache.retainAll(files.stream().map(Node::getPath).collect(Collectors.toSet()));
+        }
+    }
+
+    public Node getBaseroot() {
+        return baseroot;
+    }
+
+    /**
+     * @return index of the packages and files of the tree, null before createTree or setDependencies was called for
+     * the baseroot
+     */
+    public NodeIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @return modification times in milliseconds of every directory createTree listed and every source file it found,
+     * by path. A new, deleted or changed source file changes one of them, so they tell if the tree is up to date.
+     */
+    public Map<String, Long> getModificationTimes() {
+        return modificationTimes;
+    }
+
+    /**
+     * set the charset of the source files parsed in setDependencies, UTF-8 by default
+     *
+     * @param charset charset of the source files
+     */
+    public void setCharset(Charset charset) {
+        this.charset = charset;
+        scanner = new SourceScanner(basepackage_dot, charset, analysisDepth);
+    }
+
+    /**
+     * set if setDependencies scans for fully qualified class name usages or only for imports, FULL by default. A
+     * DependencyCache used with this tree must have been created for the same depth.
+     *
+     * @param analysisDepth analysis depth of the source files
+     */
+    public void setAnalysisDepth(AnalysisDepth analysisDepth) {
+        this.analysisDepth = analysisDepth;
+        scanner = new SourceScanner(basepackage_dot, charset, analysisDepth);
+    }
+
+    /**
+     * use a DependencyCache in setDependencies, so only new and changed files are parsed; the dependencies of all files
+     * are still resolved
+     *
+     * @param dependencyCache cache to use, null to parse all files
+     */
+    public void setDependencyCache(DependencyCache dependencyCache) {
+        this.dependencyCache = dependencyCache;
+    }
+
+    /**
+     * count the files and nodes createTree, setDependencies, sortTree and setLayer have processed. The phase of the
+     * progress is not changed.
+     *
+     * @param progress progress to update
+     */
+    public void setProgress(AnalysisProgress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * helper method for setDependencies(Node node)
+     *
+     * @param fileDependencies provides the package and file names a file has dependencies on
+     */
+    private void setDependencies(Node root, Function<Node, List<String>> fileDependencies) {
         for (Node child : root.getChildren()) {
             if (child.hasChildren()) {
-                setDependencies(child);
+                setDependencies(child, fileDependencies);
             } else {
-                // get all dependencies from imports including wildcard imports
-                for (String dependency : getDependenciesFromFile(child)) {
-                    String dependencyString = dependency.replace(".", "/");
-                    // if import is not a wildcard import add .java to it to find the file
-                    if (!dependency.matches("[a-zA-Z.]*\\*")) {
-                        dependencyString += ".java";
-                    }
-                    // remove the basepackage name from dependency to find file(s) in same package
-                    dependencyString = dependencyString.substring(dependencyString.lastIndexOf(basepackage) + basepackage.length() + 1);
-                    String[] pathParts = dependencyString.split("/");
-                    // iterate through all children til the package and filename matches the dependencyString
-
-//                    System.out.println("Find dependencies for: " + child.getPackageName() + "; dependencyString: " + dependencyString);
-                    List<Node> foundDependencies = findPackageNameInModules(pathParts, baseroot);
-                    foundDependencies.stream().filter(
-                            wildcardDependency -> !child.getDependencies().contains(wildcardDependency)
-                    )
-                            .forEach(wildcardDependency -> child.getDependencies().add(wildcardDependency));
-                }
-                // get all dependencies for fully qualified class usage, ignoring:
-                //   import declarations
-                //   package declarations
+                // get all dependencies from imports including wildcard imports and fully qualified class usages, ignoring:
                 //   single line comments
                 //   multi line comments
                 //   strings
-                for (String qualifiedDependency : getClassQualifierDependencies(child)) {
-                    // add .java to find the file
-                    String dependencyString = qualifiedDependency.replace(".", "/") + ".java";
-                    // remove the basepackage name from dependency to find file(s) in same package
-                    dependencyString = dependencyString.substring(dependencyString.lastIndexOf(basepackage) + basepackage.length() + 1);
-                    String[] pathParts = dependencyString.split("/");
-                    List<Node> foundDependencies = findPackageNameInModules(pathParts, baseroot);
-                    foundDependencies.stream().filter(
-                            wildcardDependency -> !child.getDependencies().contains(wildcardDependency)
-                    )
-                            .forEach(wildcardDependency -> child.getDependencies().add(wildcardDependency));
-                }
+                resolveDependencies(fileDependencies.apply(child), index, child.getDependencies());
             }
-            // add all file dependencies to the current package; done for structuring purposes
-            root.getDependencies().addAll(child.getDependencies());
         }
     }
 
     /**
-     * analyze the file of a given Node object for fully qualified class name usage dependencies. helper method for setDependencies(Node node)
+     * look up the dependencies found in a file in an index
      *
-     * @param node Node to analyze
-     * @return List of package and file names the current node has dependencies on
+     * @param dependencies package and file names the file has dependencies on
+     * @param resolved     set the nodes the names resolve to are added to
      */
-    private List<String> getClassQualifierDependencies(Node node) {
+    private void resolveDependencies(List<String> dependencies, NodeIndex index, List<Node> resolved) {
+        long start = System.nanoTime();
+        for (String dependency : dependencies) {
+            // remove the basepackage name from dependency and look up the file(s) or package(s) in the index
+            // dependencies are a NodeSet, so nodes which are already contained are skipped
+            resolved.addAll(index.resolve(dependency.substring(basepackage_dot.length() + 1)));
+        }
+        progress.fileResolved(System.nanoTime() - start, resolved.size());
+    }
+
+    /**
+     * parse some files of the tree, through the DependencyCache if one is set, and resolve their dependencies in a
+     * given index; used by TreeUpdate for the files whose dependencies may have changed
+     *
+     * @param files files to parse
+     * @param index index to resolve the dependencies in
+     * @return resolved dependencies of every file
+     */
+    List<NodeSet> resolveFiles(List<Node> files, NodeIndex index) {
+        long bytesRead = scanner.getBytesRead();
+        List<NodeSet> resolved = new ArrayList<>(files.size());
+        for (Node file : files) {
+            NodeSet dependencies = new NodeSet();
+            resolveDependencies(getDependenciesFromFile(file), index, dependencies);
+            resolved.add(dependencies);
+        }
+        progress.bytesRead(scanner.getBytesRead() - bytesRead);
+        return resolved;
+    }
+
+    String getBasepackage_dot() {
+        return basepackage_dot;
+    }
+
+    DependencyCache getDependencyCache() {
+        return dependencyCache;
+    }
+
+    AnalysisProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * parse all files below a given Node object in parallel
+     *
+     * @param root Node object which's files are parsed
+     * @return dependencies of every file in the order setDependencies visits the files
+     */
+    private List<List<String>> parseFiles(Node root) {
+        List<Node> files = new ArrayList<>();
+        collectFiles(root, files);
+        List<List<String>> parsedFiles = new ArrayList<>(Collections.nCopies(files.size(), null));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
         try {
-            if (!node.hasChildren() && node.getFilename().endsWith(".java")) {
-                List<String> imports = new ArrayList<>();
-                String[] lines = clearFileContent(new String(Files.readAllBytes(Paths.get(node.getPath())))).split("\n");
-                for (String content : lines) {
-                    // dependency found if string.string.... pattern is matched and
-                    //   if pattern is not in a single or multi line comment
-                    //   if pattern is not in a string
-                    //   if pattern is not in an import or the package name
-                    Matcher importMatcher = cache.getPattern("^(?!(.*\\simport|.*\\spackage|\\s*//|\\s*/\\*|\\s*\\*|.*\")).*(([A-Za-z_$][A-Za-z_$0-9]*)\\.)+([A-Za-z_$][A-Za-z_$0-9]*)(?!\\($)").matcher(content);
-                    if (importMatcher.lookingAt()) {
-                        String dependency = importMatcher.group();
-                        // if it is an import from the current project
-                        if (dependency.contains(basepackage_dot)) {
-                            // extract packageName.fileName from matched region
-                            Matcher dependencyMatcher = Pattern.compile("([a-zA-Z]+\\.)+[a-zA-Z]+").matcher(dependency);
-                            if (dependencyMatcher.find()) {
-                                String foundDependency = dependencyMatcher.group();
-                                if (!imports.contains(foundDependency)) {
-                                    imports.add(foundDependency);
-                                }
-                            }
-                        }
-                    }
+            pool.invoke(new ParseFilesTask(files, parsedFiles, 0, files.size()));
+        } finally {
+            pool.shutdown();
+        }
+        return parsedFiles;
+    }
+
+    private void collectFiles(Node root, List<Node> files) {
+        for (Node child : root.getChildren()) {
+            if (child.hasChildren()) {
+                collectFiles(child, files);
+            } else {
+                files.add(child);
+            }
+        }
+    }
+
+    /**
+     * parses a range of files and splits itself up as long as the range is larger than PARSE_BATCH_SIZE
+     */
+    private class ParseFilesTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private static final int PARSE_BATCH_SIZE = 16;
+
+        private final List<Node> files;
+        private final List<List<String>> parsedFiles;
+        private final int from;
+        private final int to;
+
+        ParseFilesTask(List<Node> files, List<List<String>> parsedFiles, int from, int to) {
+            this.files = files;
+            this.parsedFiles = parsedFiles;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARSE_BATCH_SIZE) {
+                for (int i = from; i < to; i++) {
+                    parsedFiles.set(i, getDependenciesFromFile(files.get(i)));
                 }
-                return imports;
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ParseFilesTask(files, parsedFiles, from, middle),
+                        new ParseFilesTask(files, parsedFiles, middle, to));
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
-        return Collections.EMPTY_LIST;
     }
 
     /**
-     * analyze the file of a given Node object for import and wildcard import dependencies. helper method for setDependencies(Node node)
+     * analyze the file of a given Node object for import, wildcard import and fully qualified class name usage
+     * dependencies. The file is read and scanned only once. helper method for setDependencies(Node node)
      *
      * @param node Node to analyze
      * @return List of package and file names the current node has dependencies on
      */
     private List<String> getDependenciesFromFile(Node node) {
+        long start = System.nanoTime();
         try {
             if (!node.hasChildren() && node.getFilename().endsWith(".java")) {
-                List<String> imports = new ArrayList<>();
-                String[] lines = clearFileContent(new String(Files.readAllBytes(Paths.get(node.getPath())))).split("\n");
-                for (String content : lines) {
-                    // found the end of the area where import statements are valid
-                    //   if the line does not begin with a single or multi line comment
-                    //   if the line does not begin with an import statement
-                    //   if the line is not empty or not only contains whitespaces
-                    //   if the line is not the package declaration
-                    Matcher classMatcher = cache.getPattern("^(?!(\\s*import|\\s*$|\\s*//|\\s*/\\*|\\s*\\*|\\s*package))").matcher(content);
-                    if (classMatcher.find()) {
-                        break;
-                    }
-                    // find all regions with an import statement
-                    Matcher importMatcher = cache.getPattern("^(?!(\\s*//|\\s*/\\*|\\s*\\*|.*\"))import (([A-Za-z_$][A-Za-z_$0-9]*)\\.)+(([A-Za-z_$][A-Za-z_$0-9]*)|\\*);").matcher(content);
-                    while (importMatcher.find()) {
-                        String dependency = importMatcher.group();
-                        // if it is an import from the current project
-                        if (dependency.contains(basepackage_dot)) {
-                            // extract packageName.fileName from matched region
-                            Matcher dependencyMatcher = cache.getPattern(" ([a-zA-Z]+.)*([a-zA-Z]|\\*)").matcher(dependency);
-                            if (dependencyMatcher.find()) {
-                                String foundDependency = dependencyMatcher.group().substring(1);
-                                if (!imports.contains(foundDependency)) {
-                                    imports.add(foundDependency);
-                                }
-                            }
-                        }
-                    }
+                if (dependencyCache != null) {
+                    return dependencyCache.getDependencies(Paths.get(node.getPath()), scanner);
                 }
-                return imports;
+                return scanner.scan(Paths.get(node.getPath()));
             }
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            progress.fileParsed(System.nanoTime() - start);
         }
         return Collections.EMPTY_LIST;
     }
 
     /**
-     * remove comments from a given fileContent
-     * @param fileContent fieContent to clear
-     * @return cleared fileContent
+     * create DependencyTree from file system recursively. Every directory is listed once with NIO, reading the
+     * attributes of each entry only once, and subdirectories are walked in a ForkJoinPool with parallelism threads.
+     * If root is the baseroot the NodeIndex used to resolve dependencies is built afterwards.
+     *
+     * @param root current root Node which's children are created
+     * @return current Node with its children
      */
-    private String clearFileContent(final String fileContent) {
-        return fileContent.replaceAll("(\\/\\*(.|[\\r\\n])+?\\*\\/)|(\\/\\/.*[\\r\\n])", "");
+    public void createTree(Node root) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new AddChildrenTask(root));
+        } finally {
+            pool.shutdown();
+        }
+        if (root == baseroot) {
+            index = new NodeIndex(baseroot);
+        }
     }
 
-    private List<Node> findPackageNameInModules(String[] packageName, Node root) {
-        // List nodes
-        // if root is a module
-        //   go through every child of root
-        //     if the child is a package
-        //       if first part of packageName fits child.filename
-        //         add goThroughPackageTree(packageName, child) to nodes
-        //       else skip
-        //     else if the child is a module
-        //       add recursive to nodes
-        //   return nodes
-        // else if root is package
-        //   add goThroughPackageTree(packageName, root) to nodes
-        // return nodes
-
-        List<Node> nodes = new LinkedList<>();
-        if (root.getPackageName().equals("")) {
-            for (Node child : root.getChildren()) {
-                if (!child.getPackageName().equals("")) {
-                    if (child.getFilename().equals(packageName[0])) {
-                        nodes.addAll(gotThroughPackageTree(packageName, child));
-                    }
-                } else {
-                    nodes.addAll(findPackageNameInModules(packageName, child));
-                }
-            }
-        } else {
-            nodes.addAll(gotThroughPackageTree(packageName, root));
+    /**
+     * creates the children of one Node and walks its subdirectories in subtasks. Children are added after all
+     * subtasks are done, in the same order as a sequential walk adds them.
+     */
+    private class AddChildrenTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Node root;
+
+        AddChildrenTask(Node root) {
+            this.root = root;
         }
-        return nodes;
-    }
 
-    private List<Node> gotThroughPackageTree(String[] packageName, Node root) {
-        Node currentNode = root;
-        for (int i = 1; i < packageName.length; i++) {
-            if (currentNode != null) {
-                if (currentNode.hasChildren()) {
-                    // if dependencyString contains a wildcard add all children as dependencies and stop here
-                    if (packageName[i].equals("*")) {
-                        return currentNode.getChildren();
-                    } else {
-                        if (currentNode.getChildByName(packageName[i]) != null) {
-                            currentNode = currentNode.getChildByName(packageName[i]);
+        @Override
+        protected void compute() {
+            List<Node> candidates = new ArrayList<>();
+            List<AddChildrenTask> subtasks = new ArrayList<>();
+            List<DirectoryEntry> entries = listDirectory(Paths.get(root.getPath()));
+            if (entries.stream().anyMatch(entry -> entry.name.equals("src"))) {
+                for (DirectoryEntry entry : entries) {
+                    if (entry.name.equals("src")) {
+                        // check if there is a child with 'src/main/java/{basepackage}'
+                        Path childToContinue = entry.path.resolve("main/java/" + basepackage);
+                        if (Files.isDirectory(childToContinue)) {
+                            for (DirectoryEntry f : listDirectory(childToContinue)) {
+                                // if such a file exists use it instead of the current file
+                                String packageName = (root.getPackageName().equals("") ? f.name : root.getPackageName() + "." + f.name);
+                                addCandidate(new Node(new LinkedList<>(), f.path.toString(), f.name, packageName), f, candidates, subtasks);
+                            }
                         } else {
-                            return Collections.EMPTY_LIST;
+                            addCandidate(createNode(entry), entry, candidates, subtasks);
                         }
                     }
                 }
+            } else {
+                for (DirectoryEntry entry : entries) {
+                    // skip file if file is
+                    //   a non java file
+                    //   a hidden package (beginning with a '.')
+                    //   an output package (named 'build', 'out', or 'classes')
+                    //   a node_modules directory
+                    if (!entry.directory && !entry.name.endsWith(".java") || isForbidden(entry.name)) {
+                        continue;
+                    }
+                    addCandidate(createNode(entry), entry, candidates, subtasks);
+                }
+            }
+            invokeAll(subtasks);
+            for (Node node : candidates) {
+                if (node.getFilename().endsWith(".java") || !node.getChildren().isEmpty()) {
+                    root.getChildren().add(node);
+                    progress.nodeCreated();
+                    if (node.getChildren().isEmpty()) {
+                        progress.fileDiscovered();
+                    }
+                }
             }
         }
-        return Collections.singletonList(currentNode);
+
+        private void addCandidate(Node node, DirectoryEntry entry, List<Node> candidates, List<AddChildrenTask> subtasks) {
+            candidates.add(node);
+            if (entry.directory) {
+                subtasks.add(new AddChildrenTask(node));
+            } else if (entry.name.endsWith(".java")) {
+                modificationTimes.put(node.getPath(), entry.lastModified);
+            }
+        }
+
+        private Node createNode(DirectoryEntry entry) {
+            String path = entry.path.toString();
+            if (path.contains("src/main/java") || path.contains("src\\main\\java")) {
+                return new Node(new LinkedList<>(), path, entry.name, root.getPackageName() + "." + entry.name);
+            }
+            return new Node(new LinkedList<>(), path, entry.name, "");
+        }
     }
 
     /**
-     * create DependencyTree from file system recursively
+     * same as a find of the pattern "(^\\.|build|out|classes|node_modules)" on the name, without a regex. Also used by
+     * ProjectWatcher, so it does not watch directories createTree skips.
      *
-     * @param root current root Node which's children are created
-     * @return current Node with its children
+     * @return true if createTree skips a file or directory with the given name
      */
-    public void createTree(Node root) {
-        File rootFile = new File(root.getPath());
-        File[] files = Objects.requireNonNull(rootFile.listFiles());
-        Arrays.sort(files, (f1, f2) -> {
-            if (f1.isDirectory() && !f2.isDirectory()) {
-                return -1;
-            } else if (!f1.isDirectory() && f2.isDirectory()) {
-                return 1;
-            } else {
-                return f1.compareTo(f2);
-            }
-        });
-        List<String> fileNames = Arrays.stream(files).map(File::getName).collect(Collectors.toList());
-        if (fileNames.contains("src")) {
-            for (File file : files) {
-                if (file.getName().equals("src")) {
-                    // check if there is a child with 'src/main/java/{basepackage}'
-                    String packagePath = "/main/java/" + basepackage;
-                    File childToContinue = new File(file.getPath() + packagePath);
-                    if (childToContinue.exists()) {
-                        for (File f : Objects.requireNonNull(childToContinue.listFiles())) {
-                            // if such a file exists use it instead of the current file
-                            String packageName = (root.getPackageName().equals("") ? f.getName() : root.getPackageName() + "." + f.getName());
-
-                            Node packageSkipNode = new Node(new LinkedList<>(), f.getPath(), f.getName(), packageName);
-                            if (f.isDirectory()) {
-                                createTree(packageSkipNode);
-                            }
-                            if (!packageSkipNode.getFilename().endsWith(".java") && packageSkipNode.getChildren().isEmpty()) {
-                                continue;
-                            }
-                            root.getChildren().add(packageSkipNode);
-                            continue;
-                        }
-                    } else {
-                        Node node;
-                        if (file.getPath().contains("src/main/java") || file.getPath().contains("src\\main\\java")) {
-                            node = new Node(new LinkedList<>(), file.getPath(), file.getName(), root.getPackageName() + "." + file.getName());
-                        } else {
-                            node = new Node(new LinkedList<>(), file.getPath(), file.getName(), "");
-                        }
-                        if (file.isDirectory()) {
-                            createTree(node);
-                        }
-                        if (!node.getFilename().endsWith(".java") && node.getChildren().isEmpty()) {
-                            continue;
-                        }
-                        root.getChildren().add(node);
-                    }
+    public static boolean isForbidden(String name) {
+        return name.startsWith(".") || name.contains("build") || name.contains("out") || name.contains("classes")
+                || name.contains("node_modules");
+    }
+
+    /**
+     * list a directory, directories first, each sorted by name. The attributes of every entry are read only once. The
+     * modification time of the directory is read before it is listed, so an entry added while listing changes it.
+     *
+     * @return entries of the directory; empty if it can not be read
+     */
+    private List<DirectoryEntry> listDirectory(Path directory) {
+        List<DirectoryEntry> directories = new ArrayList<>();
+        List<DirectoryEntry> files = new ArrayList<>();
+        try {
+            modificationTimes.put(directory.toString(), Files.getLastModifiedTime(directory).toMillis());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    // e.g. a broken link, which File.isDirectory() treated as a file
+                    attributes = null;
                 }
+                DirectoryEntry entry = new DirectoryEntry(path, attributes != null && attributes.isDirectory(),
+                        attributes != null ? attributes.lastModifiedTime().toMillis() : 0);
+                (entry.directory ? directories : files).add(entry);
             }
-        } else {
-            for (File file : files) {
-                // skip file if file is
-                //   a non java file
-                //   a hidden package (beginning with a '.')
-                //   an output package (named 'build', 'out', or 'classes')
-                //   a node_modules directory
-                Matcher forbiddenDirs = cache.getPattern("(^\\.|build|out|classes|node_modules)").matcher(file.getName());
-                if (!file.isDirectory() && !file.getName().endsWith(".java") || forbiddenDirs.find()) {
-                    continue;
-                }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        directories.sort(Comparator.comparing(entry -> entry.path));
+        files.sort(Comparator.comparing(entry -> entry.path));
+        directories.addAll(files);
+        return directories;
+    }
 
-                // if filename equals src
-                //   check if children with src/main/java exist
+    private static class DirectoryEntry {
 
-                Node node;
-                if (file.getPath().contains("src/main/java") || file.getPath().contains("src\\main\\java")) {
-                    node = new Node(new LinkedList<>(), file.getPath(), file.getName(), root.getPackageName() + "." + file.getName());
-                } else {
-                    node = new Node(new LinkedList<>(), file.getPath(), file.getName(), "");
-                }
-                if (file.isDirectory()) {
-                    createTree(node);
-                }
-                if (!node.getFilename().endsWith(".java") && node.getChildren().isEmpty()) {
-                    continue;
-                }
-                root.getChildren().add(node);
-            }
+        final Path path;
+        final String name;
+        final boolean directory;
+        final long lastModified;
+
+        DirectoryEntry(Path path, boolean directory, long lastModified) {
+            this.path = path;
+            this.name = path.getFileName().toString();
+            this.directory = directory;
+            this.lastModified = lastModified;
         }
     }
 
@@ -333,43 +468,47 @@ public class DependencyTree {
      * else if o2 is a directory and o1 is not
      *   o2 is before o1
      * else compare o1 and o2 lexically
+     * The dependencies between all children are counted once per node, see SiblingDependencyMatrix.
      *
      * @param node Node object which's children are to sort
      */
     public void sortTree(Node node) {
         if (node.hasChildren()) {
-            NodeComparator nodeComparator = new NodeComparator();
             for (Node child : node.getChildren()) {
                 sortTree(child);
             }
-            node.getChildren().sort(nodeComparator);
+            NodeComparator.sort(node.getChildren());
+            progress.nodeSorted();
         }
     }
 
     /**
-     * Set the display layer of a given Node object's children and their children recursively
+     * Set the display layer of a given Node object's children and their children recursively. Children are layered
+     * with a SiblingLayering: a child is placed above the siblings it has dependencies on and children depending on
+     * each other in a cycle share one layer. The cycles found are stored in the Node.
      *
      * @param node Node object which children's display layer is set
      */
     public void setLayer(Node node) {
-        int layer = 0;
-        for (int i = 0; i < node.getChildren().size(); i++) {
-            // for every child in the current layer check
-            for (int j = 0; j < i; j++) {
-                if (node.getChildren().get(j).getLayer() == layer) {
-                    // if a child in the current layer has a dependency on the child[i] and child[i] has no dependency on it
-                    // or a child in the current row has more dependencies on the child[i] than the child[i] has on it
-                    if (node.getChildren().get(j).hasDependencyOn(node.getChildren().get(i)) && !node.getChildren().get(i).hasDependencyOn(node.getChildren().get(j))) {
-                        // raise row
-                        layer++;
-                    } else if (node.getChildren().get(j).countDependenciesOn(node.getChildren().get(i)).size() > node.getChildren().get(i).countDependenciesOn(node.getChildren().get(j)).size()) {
-                        // raise layer
-                        layer++;
-                    }
-                }
+        if (!node.hasChildren()) {
+            return;
+        }
+        SiblingDependencyMatrix<Node> matrix = new SiblingDependencyMatrix<>(NodeTreeView.INSTANCE, node.getChildren());
+        SiblingLayering layering = new SiblingLayering(matrix);
+        List<List<Node>> cycles = new ArrayList<>();
+        for (int[] cycle : layering.getCycles()) {
+            List<Node> members = new ArrayList<>(cycle.length);
+            for (int i : cycle) {
+                members.add(matrix.getSibling(i));
             }
-            node.getChildren().get(i).setLayer(layer);
-            setLayer(node.getChildren().get(i));
+            cycles.add(members);
+        }
+        node.setCycles(cycles);
+        progress.nodesLayered(matrix.size());
+        for (int i = 0; i < matrix.size(); i++) {
+            Node child = matrix.getSibling(i);
+            child.setLayer(layering.getLayer(i));
+            setLayer(child);
         }
     }
 
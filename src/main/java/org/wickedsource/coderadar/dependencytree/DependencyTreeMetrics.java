@@ -0,0 +1,107 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Micrometer meters of DependencyTreeService, exposed by the actuator metrics endpoint, e.g.
+ * /actuator/metrics/dependencytree.phase?tag=phase:parse
+ *
+ * dependencytree.phase       timer per phase of an analysis: queued (waiting for a build permit), create_tree
+ *                            (walking the file system), set_dependencies, parse and resolve (parts of
+ *                            set_dependencies, parse is summed over all parsing threads), sort_tree and set_layer
+ * dependencytree.build       timer of whole analyses including the time queued, tagged with result success or failure
+ * dependencytree.serialize   timer of writing a tree to a response, tagged with format; includes sending it
+ * dependencytree.files.parsed, dependencytree.bytes.read, dependencytree.edges, dependencytree.nodes.created
+ *                            counters summed over all analyses
+ * dependencytree.trees.memory, dependencytree.projects.cached
+ *                            gauges of the estimated size and number of the kept trees
+ */
+public class DependencyTreeMetrics {
+
+    private final MeterRegistry registry;
+    private final Map<AnalysisProgress.Phase, Timer> phaseTimers = new EnumMap<>(AnalysisProgress.Phase.class);
+    private final Timer parseTimer;
+    private final Timer resolveTimer;
+    private final Timer buildSuccessTimer;
+    private final Timer buildFailureTimer;
+    private final Counter filesParsed;
+    private final Counter bytesRead;
+    private final Counter edges;
+    private final Counter nodesCreated;
+    // gauges only keep weak references, so the suppliers are kept here
+    private final LongSupplier treeBytes;
+    private final LongSupplier cachedProjects;
+
+    /**
+     * @param registry       registry to register the meters in
+     * @param treeBytes      estimated size of all kept trees
+     * @param cachedProjects number of kept projects
+     */
+    public DependencyTreeMetrics(MeterRegistry registry, LongSupplier treeBytes, LongSupplier cachedProjects) {
+        this.registry = registry;
+        this.treeBytes = treeBytes;
+        this.cachedProjects = cachedProjects;
+        phaseTimers.put(AnalysisProgress.Phase.QUEUED, phaseTimer("queued"));
+        phaseTimers.put(AnalysisProgress.Phase.CREATE_TREE, phaseTimer("create_tree"));
+        phaseTimers.put(AnalysisProgress.Phase.SET_DEPENDENCIES, phaseTimer("set_dependencies"));
+        phaseTimers.put(AnalysisProgress.Phase.SORT_TREE, phaseTimer("sort_tree"));
+        phaseTimers.put(AnalysisProgress.Phase.SET_LAYER, phaseTimer("set_layer"));
+        parseTimer = phaseTimer("parse");
+        resolveTimer = phaseTimer("resolve");
+        buildSuccessTimer = Timer.builder("dependencytree.build").tag("result", "success").register(registry);
+        buildFailureTimer = Timer.builder("dependencytree.build").tag("result", "failure").register(registry);
+        filesParsed = Counter.builder("dependencytree.files.parsed").baseUnit("files").register(registry);
+        bytesRead = Counter.builder("dependencytree.bytes.read").baseUnit("bytes").register(registry);
+        edges = Counter.builder("dependencytree.edges").description("dependencies of files found").register(registry);
+        nodesCreated = Counter.builder("dependencytree.nodes.created").baseUnit("nodes").register(registry);
+
+        Gauge.builder("dependencytree.trees.memory", this, metrics -> metrics.treeBytes.getAsLong())
+                .description("estimated heap size of the kept trees").baseUnit("bytes").register(registry);
+        Gauge.builder("dependencytree.projects.cached", this, metrics -> metrics.cachedProjects.getAsLong())
+                .register(registry);
+    }
+
+    private Timer phaseTimer(String phase) {
+        return Timer.builder("dependencytree.phase").tag("phase", phase).register(registry);
+    }
+
+    /**
+     * record the phases and counts of a finished analysis
+     *
+     * @param progress progress of the analysis, read on the thread which ran it
+     * @param success  false if the analysis failed
+     */
+    public void recordBuild(AnalysisProgress progress, boolean success) {
+        long totalNanos = 0;
+        for (Map.Entry<AnalysisProgress.Phase, Timer> entry : phaseTimers.entrySet()) {
+            long nanos = progress.getPhaseNanos(entry.getKey());
+            entry.getValue().record(nanos, TimeUnit.NANOSECONDS);
+            totalNanos += nanos;
+        }
+        parseTimer.record(progress.getParseNanos(), TimeUnit.NANOSECONDS);
+        resolveTimer.record(progress.getResolveNanos(), TimeUnit.NANOSECONDS);
+        (success ? buildSuccessTimer : buildFailureTimer).record(totalNanos, TimeUnit.NANOSECONDS);
+        filesParsed.increment(progress.getFilesParsed());
+        bytesRead.increment(progress.getBytesRead());
+        edges.increment(progress.getEdgesFound());
+        nodesCreated.increment(progress.getNodesCreated());
+    }
+
+    /**
+     * record writing a tree to a response
+     *
+     * @param format format of the tree, see /getTree
+     */
+    public void recordSerialization(String format, long nanos) {
+        Timer.builder("dependencytree.serialize").tag("format", format.equals("compact") ? "compact" : "full")
+                .register(registry).record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -1,56 +1,627 @@
 package org.wickedsource.coderadar.dependencytree;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @CrossOrigin(origins = "*")
 public class DependencyTreeService {
 
-    private static final String BASEPACKAGE = "org/wickedsource/coderadar";
     private static final String BASEPACKAGE_DOT = "org.wickedsource.coderadar";
-    private static Node BASEROOT;
+    private static final String PROJECTDIR = "C:/Users/teklote/Documents/git/coderadar";
+//    private static final String PROJECTDIR = "C:/Users/teklote/Documents/git/coderadar/coderadar-server/coderadar-core/src/main/java/";
+    private static final ObjectMapper OBJECT_MAPPER = createObjectMapper(new NodeSerializer());
+    private static final ObjectMapper COMPACT_OBJECT_MAPPER = createObjectMapper(new CompactNodeSerializer());
+    private static final int GZIP_BUFFER_SIZE = 8192;
+    private static final Pattern PACKAGE_NAME = Pattern.compile("[\\p{L}_$][\\p{L}\\p{N}_$]*(\\.[\\p{L}_$][\\p{L}\\p{N}_$]*)*");
 
+    /**
+     * number of threads used to parse files; 0 or less uses one thread per available processor
+     */
+    @Value("${dependencytree.parallelism:0}")
+    private int parallelism;
+
+    /**
+     * file the parsed dependencies of every file of the default project are saved to; empty keeps them in memory only
+     */
+    @Value("${dependencytree.cache-file:}")
+    private String cacheFile;
+
+    /**
+     * if true the default project is analyzed at startup and again after every change, /getTree serves the last
+     * analyzed tree of it
+     */
+    @Value("${dependencytree.watch:false}")
+    private boolean watch;
+
+    /**
+     * time without file changes after which the tree is analyzed again in watch mode
+     */
+    @Value("${dependencytree.watch-debounce-ms:500}")
+    private long watchDebounceMillis;
+
+    /**
+     * charset of the source files of the project
+     */
+    @Value("${dependencytree.charset:UTF-8}")
+    private String charset;
+
+    /**
+     * IMPORTS_ONLY only looks at imports, FULL also at fully qualified class name usages
+     */
+    @Value("${dependencytree.analysis-depth:FULL}")
+    private AnalysisDepth analysisDepth;
+
+    /**
+     * if true /getTree is gzip compressed for clients sending "Accept-Encoding: gzip"
+     */
+    @Value("${dependencytree.gzip:true}")
+    private boolean gzip;
+
+    /**
+     * number of trees which may be built at the same time, requests for a tree which is being built wait for it
+     */
+    @Value("${dependencytree.max-concurrent-builds:1}")
+    private int maxConcurrentBuilds;
+
+    /**
+     * comma separated directories the requested projects have to be in; empty only allows the default project
+     * directory
+     */
+    @Value("${dependencytree.allowed-project-roots:}")
+    private String[] allowedProjectRoots;
+
+    /**
+     * number of projects whose trees are cached
+     */
+    @Value("${dependencytree.cache.max-projects:20}")
+    private int maxProjects;
+
+    /**
+     * estimated heap size all cached trees together may take
+     */
+    @Value("${dependencytree.cache.max-memory-mb:512}")
+    private long maxMemoryMb;
+
+    /**
+     * time after the last request for a project after which its tree is evicted; 0 never evicts idle projects
+     */
+    @Value("${dependencytree.cache.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    /**
+     * number of finished analysis jobs whose trees are kept, the oldest jobs are evicted first
+     */
+    @Value("${dependencytree.jobs.max-retained:20}")
+    private int maxRetainedJobs;
+
+    /**
+     * time after which a finished analysis job and its tree are evicted; 0 keeps finished jobs
+     */
+    @Value("${dependencytree.jobs.retention-minutes:30}")
+    private long jobRetentionMinutes;
+
+    /**
+     * directory the analyzed tree of every watched project is saved to, so it is not analyzed again after a restart
+     * unless its files changed; empty keeps trees in memory only
+     */
+    @Value("${dependencytree.snapshot-dir:}")
+    private String snapshotDir;
+
+    private BuildCoordinator<String, TreeSnapshot> builds;
+    /**
+     * registry of the actuator metrics, a SimpleMeterRegistry is used if there is none
+     */
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private DependencyTreeMetrics metrics;
+    private ProjectCache projectCache;
+    private AnalysisJobs jobs;
+    private ExecutorService jobExecutor;
+    // saves trees to the snapshot directory one after another, so a build does not wait for it
+    private ExecutorService snapshotWriter;
+    // key of the project analyzed if no project is requested
+    private String defaultProjectKey;
+    // default project kept up to date in watch mode, it is not evicted from the cache
+    private Project watchedProject;
+
+    /**
+     * In watch mode analyze the default project once in the background and keep its tree up to date.
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        builds = new BuildCoordinator<>(maxConcurrentBuilds);
+        projectCache = new ProjectCache(maxProjects, maxMemoryMb * 1024 * 1024, ttlMinutes * 60 * 1000);
+        jobs = new AnalysisJobs(maxRetainedJobs, jobRetentionMinutes * 60 * 1000);
+        metrics = new DependencyTreeMetrics(meterRegistry != null ? meterRegistry : new SimpleMeterRegistry(),
+                this::getTreeBytes, projectCache::size);
+        // jobs wait for a build permit anyway, so there is no need for more threads than permits
+        jobExecutor = Executors.newFixedThreadPool(Math.max(1, maxConcurrentBuilds), runnable -> {
+            Thread thread = new Thread(runnable, "analysis-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotWriter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!snapshotDir.isEmpty()) {
+            Files.createDirectories(Paths.get(snapshotDir));
+        }
+        Path rootDir = Paths.get(PROJECTDIR).toAbsolutePath().normalize();
+        defaultProjectKey = Project.key(rootDir, BASEPACKAGE_DOT);
+        if (watch && Files.isDirectory(rootDir)) {
+            watchedProject = new Project(rootDir, BASEPACKAGE_DOT, createDependencyCache(defaultProjectKey, BASEPACKAGE_DOT));
+            // the watcher is registered before the saved tree is checked, so no change is missed in between
+            ProjectWatcher projectWatcher = new ProjectWatcher(rootDir, watchDebounceMillis,
+                    changes -> {
+                        // the published tree is served until the changes are analyzed
+                        watchedProject.changed(changes);
+                        build(watchedProject, watchedProject.nextBuildProgress());
+                    });
+            watchedProject.setWatcher(projectWatcher);
+            // the first analysis runs on the watcher thread, so startup does not wait for it; until it is published
+            // requests analyze the project themselves and share the running analysis
+            projectWatcher.start(() -> {
+                if (!loadSnapshot(watchedProject)) {
+                    build(watchedProject, watchedProject.nextBuildProgress());
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void stopWatching() throws IOException {
+        jobExecutor.shutdownNow();
+        snapshotWriter.shutdown();
+        projectCache.close();
+        if (watchedProject != null) {
+            watchedProject.close();
+        }
+    }
+
+    /**
+     * write the tree of a project as JSON directly to the response. The JSON is generated while it is sent, so a
+     * request only holds the generator's buffer instead of the whole document. If the client accepts gzip and
+     * dependencytree.gzip is set the response is compressed.
+     * The tree of every project is cached until files of the project change, see ProjectCache. Concurrent requests
+     * share one analysis of a project, see BuildCoordinator.
+     *
+     * @param projectDir  project directory, must exist and be inside of dependencytree.allowed-project-roots
+     * @param basePackage package whose classes are analyzed, e.g. "org.wickedsource.coderadar"
+     * @param format      "compact" writes a node table with dependencies as node ids, see CompactNodeSerializer;
+     *                    anything else writes nested nodes with NodeSerializer
+     * @param packageName package to write instead of the whole tree, relative to the base package like the
+     *                    packageName of a Node, e.g. "core.service"; looked up in the NodeIndex of the tree
+     * @param depth       levels of children written below the package, deeper nodes are collapsed into counts;
+     *                    negative writes all levels
+     */
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE, value = "/getTree")
-    public String getDependencyTree() {
-        String projectdir = "C:/Users/teklote/Documents/git/coderadar";
-//        String projectdir = "C:/Users/teklote/Documents/git/coderadar/coderadar-server/coderadar-core/src/main/java/";
+    public void getDependencyTree(@RequestParam(value = "projectDir", defaultValue = PROJECTDIR) String projectDir,
+                                  @RequestParam(value = "basePackage", defaultValue = BASEPACKAGE_DOT) String basePackage,
+                                  @RequestParam(value = "format", defaultValue = "full") String format,
+                                  @RequestParam(value = "package", defaultValue = "") String packageName,
+                                  @RequestParam(value = "depth", defaultValue = "-1") int depth,
+                                  HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Project project = getProject(projectDir, basePackage);
+        // read the published snapshot once, without a watcher it may be outdated
+        TreeSnapshot current = project.getSnapshot();
+        if (current == null || !project.isWatched()) {
+            current = build(project, project.nextBuildProgress());
+        }
+        writeTree(current, format, packageName, depth, request, response);
+    }
 
-        File rootFile = new File(projectdir);
-//        File rootFile = new File(projectdir + BASEPACKAGE);
-        if (rootFile.isDirectory()) {
+    /**
+     * start analyzing a project in the background. If the project is being analyzed by a job already, that job is
+     * returned instead of starting another one.
+     *
+     * @param projectDir  project directory, see /getTree
+     * @param basePackage package whose classes are analyzed, see /getTree
+     * @return status of the job, see /jobs/{id}
+     */
+    @PostMapping(produces = MediaType.APPLICATION_JSON_VALUE, value = "/jobs")
+    public ResponseEntity<AnalysisJob> submitJob(@RequestParam(value = "projectDir", defaultValue = PROJECTDIR) String projectDir,
+                                                 @RequestParam(value = "basePackage", defaultValue = BASEPACKAGE_DOT) String basePackage) {
+        Project project = getProject(projectDir, basePackage);
+        AnalysisJob job = jobs.submit(project, this::runJob, jobExecutor);
+        return ResponseEntity.accepted().location(URI.create("/jobs/" + job.getId())).body(job);
+    }
 
-            BASEROOT = new Node(new LinkedList<>(), rootFile.getPath(), rootFile.getName(), "");
-            DependencyTree dependencyTree = new DependencyTree(BASEPACKAGE, BASEPACKAGE_DOT, BASEROOT);
-            dependencyTree.createTree(BASEROOT);
-            dependencyTree.setDependencies(BASEROOT);
-            BASEROOT.setDependencies(new LinkedList<>());
-            dependencyTree.sortTree(BASEROOT);
-            dependencyTree.setLayer(BASEROOT);
+    /**
+     * @return state and progress of an analysis job
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE, value = "/jobs/{id}")
+    public AnalysisJob getJob(@PathVariable("id") String id) {
+        return findJob(id);
+    }
+
+    /**
+     * write the tree analyzed by a job like /getTree does, see /getTree for the parameters. The tree is kept in the
+     * job, so fetching it again does not analyze the project again.
+     *
+     * @throws ResponseStatusException 409 if the job is not done yet, 500 if it failed
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE, value = "/jobs/{id}/tree")
+    public void getJobTree(@PathVariable("id") String id,
+                           @RequestParam(value = "format", defaultValue = "full") String format,
+                           @RequestParam(value = "package", defaultValue = "") String packageName,
+                           @RequestParam(value = "depth", defaultValue = "-1") int depth,
+                           HttpServletRequest request, HttpServletResponse response) throws IOException {
+        AnalysisJob job = findJob(id);
+        if (job.getState() == AnalysisJob.State.FAILED) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "job failed: " + job.getError());
         }
+        TreeSnapshot result = job.getResult();
+        if (result == null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "job not done: " + id);
+        }
+        writeTree(result, format, packageName, depth, request, response);
+    }
 
+    private AnalysisJob findJob(String id) {
+        AnalysisJob job = jobs.get(id);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "job not found: " + id);
+        }
+        return job;
+    }
+
+    /**
+     * run a job on a thread of the jobExecutor
+     */
+    private void runJob(AnalysisJob job) {
+        Project project = job.getProject();
+        try {
+            TreeSnapshot current = project.getSnapshot();
+            if (current == null || !project.isWatched()) {
+                AnalysisProgress progress = project.nextBuildProgress();
+                job.start(progress);
+                current = build(project, progress);
+            }
+            job.finish(current);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            job.fail(e.toString());
+        }
+    }
+
+    /**
+     * write a tree or one of its packages as JSON directly to the response, see /getTree
+     *
+     * @throws ResponseStatusException 404 if the package is not part of the tree
+     */
+    private void writeTree(TreeSnapshot snapshot, String format, String packageName, int depth,
+                           HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Node root = snapshot.getPackage(packageName);
+        if (root == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "package not found: " + packageName);
+        }
+        ObjectWriter objectWriter = (format.equals("compact") ? COMPACT_OBJECT_MAPPER : OBJECT_MAPPER).writer()
+                .withAttribute(NodeSerializer.MAX_DEPTH, depth);
+
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        long start = System.nanoTime();
+        if (gzip && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            // closing the GZIPOutputStream ends its Deflater, so its native memory does not wait for finalization;
+            // the response stream itself is left open for the servlet container
+            try (GZIPOutputStream out = new GZIPOutputStream(new NonClosingOutputStream(response.getOutputStream()),
+                    GZIP_BUFFER_SIZE)) {
+                objectWriter.writeValue(out, root);
+            }
+        } else {
+            objectWriter.writeValue(response.getOutputStream(), root);
+        }
+        metrics.recordSerialization(format, System.nanoTime() - start);
+    }
+
+    /**
+     * @return ObjectMapper writing Node objects with the given serializer. It does not close the stream it writes to, so the
+     * servlet container can finish the response.
+     */
+    private static ObjectMapper createObjectMapper(StdSerializer<Node> serializer) {
         ObjectMapper objectMapper = new ObjectMapper();
         SimpleModule simpleModule = new SimpleModule();
-        simpleModule.addSerializer(Node.class,new NodeSerializer());
+        simpleModule.addSerializer(Node.class,serializer);
         objectMapper.registerModule(simpleModule);
+        objectMapper.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return objectMapper;
+    }
+
+    /**
+     * look up a cached project or create and cache it. A created project is watched, so its tree is invalidated when
+     * its files change. If it can not be watched its tree is analyzed again for every request.
+     *
+     * @param projectDir  project directory
+     * @param basePackage base package with dots
+     * @return the project
+     * @throws ResponseStatusException if the directory does not exist or is not allowed, or the package is invalid
+     */
+    private Project getProject(String projectDir, String basePackage) {
+        if (!PACKAGE_NAME.matcher(basePackage).matches()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid base package: " + basePackage);
+        }
+        Path rootDir = Paths.get(projectDir).toAbsolutePath().normalize();
+        if (!isAllowed(rootDir)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "project directory not allowed: " + projectDir);
+        }
+        if (!Files.isDirectory(rootDir)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "project directory not found: " + projectDir);
+        }
+        String key = Project.key(rootDir, basePackage);
+        if (watchedProject != null && watchedProject.getKey().equals(key)) {
+            return watchedProject;
+        }
+        Project project = projectCache.get(key);
+        if (project == null) {
+            // registering the watcher walks the whole project, so it is done outside of the cache's lock
+            Project created = new Project(rootDir, basePackage, createDependencyCache(key, basePackage));
+            try {
+                ProjectWatcher projectWatcher = new ProjectWatcher(rootDir, watchDebounceMillis, created::invalidate);
+                created.setWatcher(projectWatcher);
+                projectWatcher.start();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            loadSnapshot(created);
+            project = projectCache.putIfAbsent(created);
+            if (project != created) {
+                closeProject(created);
+            }
+        }
+        return project;
+    }
+
+    /**
+     * @return estimated size of all kept trees: the cached projects and the watched default project
+     */
+    private long getTreeBytes() {
+        long bytes = projectCache.getEstimatedBytes();
+        if (watchedProject != null) {
+            bytes += watchedProject.getEstimatedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return true if a project directory is the default project directory or lies in one of the allowed project
+     * roots; nothing else is allowed, so requests can not make the service walk arbitrary directories
+     */
+    private boolean isAllowed(Path rootDir) {
+        if (rootDir.equals(Paths.get(PROJECTDIR).toAbsolutePath().normalize())) {
+            return true;
+        }
+        for (String allowedRoot : allowedProjectRoots) {
+            if (!allowedRoot.trim().isEmpty()
+                    && rootDir.startsWith(Paths.get(allowedRoot.trim()).toAbsolutePath().normalize())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return dependency cache of a project, loaded from dependencytree.cache-file for the default project
+     */
+    private DependencyCache createDependencyCache(String key, String basePackage) {
+        if (key.equals(defaultProjectKey) && !cacheFile.isEmpty()) {
+            return DependencyCache.load(Paths.get(cacheFile), basePackage, analysisDepth);
+        }
+        return new DependencyCache(basePackage, analysisDepth);
+    }
+
+    /**
+     * publish the tree saved in the snapshot directory to a watched project if its files did not change since
+     *
+     * @return true if the saved tree was published
+     */
+    private boolean loadSnapshot(Project project) {
+        if (snapshotDir.isEmpty() || !project.isWatched()) {
+            return false;
+        }
+        long version = project.getVersion();
+        TreeSnapshot snapshot = TreeSnapshotFile.load(getSnapshotFile(project), project, analysisDepth, charset);
+        return snapshot != null && project.publishIfAbsent(snapshot, version);
+    }
+
+    /**
+     * save a published tree to the snapshot directory in the background
+     */
+    private void saveSnapshot(Project project, TreeSnapshot snapshot) {
+        if (snapshotDir.isEmpty() || !project.isWatched() || snapshot.getModificationTimes() == null) {
+            return;
+        }
+        snapshotWriter.execute(() -> {
+            try {
+                TreeSnapshotFile.save(getSnapshotFile(project), snapshot, project, analysisDepth, charset,
+                        snapshot.getModificationTimes());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * @return file in the snapshot directory named after the key of a project
+     */
+    private Path getSnapshotFile(Project project) {
+        return Paths.get(snapshotDir, UUID.nameUUIDFromBytes(project.getKey().getBytes(StandardCharsets.UTF_8)) + ".snapshot");
+    }
+
+    private static void closeProject(Project project) {
         try {
-            String serialized = objectMapper.writeValueAsString(BASEROOT);
-            return serialized;
-        }catch (JsonProcessingException e){
+            project.close();
+        } catch (IOException e) {
             e.printStackTrace();
         }
+    }
 
-        return null;
+    /**
+     * analyze a project or wait for the analysis of it which is already running. If the project is watched and a tree
+     * was published before, that tree is updated with the changed files, see TreeUpdate; the tree is built again if
+     * that is not possible. The tree is published to the project unless its files changed during the analysis.
+     *
+     * @param project  project to analyze
+     * @param progress progress of the analysis, see Project.nextBuildProgress()
+     * @return snapshot of the analyzed tree
+     */
+    private TreeSnapshot build(Project project, AnalysisProgress progress) {
+        return builds.build(project.getKey(), () -> {
+            long version = project.getVersion();
+            TreeSnapshot previous = project.getPublished();
+            Set<Path> changedPaths = project.getChangedPaths();
+            long start = System.currentTimeMillis();
+            TreeSnapshot snapshot = null;
+            try {
+                if (previous != null && changedPaths != null) {
+                    snapshot = update(project, previous, changedPaths, progress, start);
+                }
+                if (snapshot == null) {
+                    DependencyTree dependencyTree = analyze(project, progress);
+                    Node root = dependencyTree.getBaseroot();
+                    root.freeze();
+                    snapshot = new TreeSnapshot(root, dependencyTree.getIndex(), System.currentTimeMillis() - start,
+                            snapshotDir.isEmpty() ? null : dependencyTree.getModificationTimes());
+                }
+            } catch (RuntimeException e) {
+                progress.setPhase(AnalysisProgress.Phase.FAILED);
+                metrics.recordBuild(progress, false);
+                throw e;
+            }
+            progress.setPhase(AnalysisProgress.Phase.DONE);
+            metrics.recordBuild(progress, true);
+            if (project.publish(snapshot, version)) {
+                saveSnapshot(project, snapshot);
+                if (project != watchedProject) {
+                    // the new tree may take more memory than the old one
+                    projectCache.evict(project);
+                }
+            }
+            return snapshot;
+        });
+    }
+
+    /**
+     * create the tree of a project with all dependencies, sorted and layered. The tree is built completely before it
+     * is returned, so it can be published to readers in one step.
+     *
+     * @param project  project to analyze
+     * @param progress updated while the project is analyzed
+     * @return the analyzed tree
+     */
+    private DependencyTree analyze(Project project, AnalysisProgress progress) {
+        File rootFile = project.getRootDir().toFile();
+        Node root = new Node(new LinkedList<>(), rootFile.getPath(), rootFile.getName(), "");
+        DependencyTree dependencyTree = createDependencyTree(project, root, progress);
+        progress.setPhase(AnalysisProgress.Phase.CREATE_TREE);
+        dependencyTree.createTree(root);
+        progress.setPhase(AnalysisProgress.Phase.SET_DEPENDENCIES);
+        dependencyTree.setDependencies(root);
+        saveDependencyCache(project);
+        root.setDependencies(new LinkedList<>());
+        progress.setPhase(AnalysisProgress.Phase.SORT_TREE);
+        dependencyTree.sortTree(root);
+        progress.setPhase(AnalysisProgress.Phase.SET_LAYER);
+        dependencyTree.setLayer(root);
+        return dependencyTree;
+    }
+
+    /**
+     * update the last published tree of a project with the files changed since, see TreeUpdate
+     *
+     * @param project      project to analyze
+     * @param previous     last published tree of the project
+     * @param changedPaths paths changed since previous was published, see Project.getChangedPaths()
+     * @param progress     updated while the tree is updated
+     * @param start        time the build started at
+     * @return the updated tree, null if the changes can not be updated and the tree has to be built again
+     */
+    private TreeSnapshot update(Project project, TreeSnapshot previous, Set<Path> changedPaths, AnalysisProgress progress,
+                                long start) {
+        DependencyTree dependencyTree = createDependencyTree(project, previous.getRoot(), progress);
+        TreeUpdate update = new TreeUpdate(dependencyTree, previous);
+        progress.setPhase(AnalysisProgress.Phase.SET_DEPENDENCIES);
+        if (!update.setDependencies(changedPaths)) {
+            return null;
+        }
+        saveDependencyCache(project);
+        progress.setPhase(AnalysisProgress.Phase.SORT_TREE);
+        update.sortTree();
+        progress.setPhase(AnalysisProgress.Phase.SET_LAYER);
+        update.setLayer();
+        return update.getSnapshot(System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @return DependencyTree for a project with the configured charset, analysis depth and the project's cache
+     */
+    private DependencyTree createDependencyTree(Project project, Node root, AnalysisProgress progress) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        DependencyTree dependencyTree = new DependencyTree(project.getBasepackage(), project.getBasepackage_dot(), root, threads);
+        dependencyTree.setCharset(Charset.forName(charset));
+        dependencyTree.setAnalysisDepth(analysisDepth);
+        dependencyTree.setDependencyCache(project.getDependencyCache());
+        dependencyTree.setProgress(progress);
+        return dependencyTree;
+    }
+
+    /**
+     * save the dependency cache of the default project if a cache file is configured and something changed
+     */
+    private synchronized void saveDependencyCache(Project project) {
+        DependencyCache dependencyCache = project.getDependencyCache();
+        if (!cacheFile.isEmpty() && project.getKey().equals(defaultProjectKey) && dependencyCache.isModified()) {
+            try {
+                dependencyCache.save(Paths.get(cacheFile));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
     /**
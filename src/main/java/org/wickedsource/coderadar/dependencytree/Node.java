@@ -1,23 +1,39 @@
 package org.wickedsource.coderadar.dependencytree;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class Node {
+    // canonical ids of the paths of all reachable Node objects, Node objects for the same path share an id
+    private static final PathIds PATH_IDS = new PathIds();
+
+    private int id;
+    // keeps the id of the path in PATH_IDS while this Node is reachable
+    private PathIds.Key idKey;
     private String filename;
     private String path;
     private String packageName;
     private List<Node> children;
-    private List<Node> dependencies;
+    private NodeSet dependencies;
     private int layer;
+    private Node parent;
+    private int packageId;
+    private List<List<Node>> cycles;
+    private boolean fixedDependencies;
+    // set on the root of a tree once the dependencies of a package are asked for, dropped by freeze()
+    private PackageDependencyCache packageDependencies;
 
     public Node(List<Node> children, String path, String filename, String packageName) {
         this.children = children;
         this.path = path;
         this.filename = filename;
         this.packageName = packageName;
-        dependencies = new ArrayList<>();
+        setId(path);
+        dependencies = new NodeSet();
         this.layer = -1;
+        this.packageId = -1;
+        this.cycles = Collections.emptyList();
     }
 
     public List<Node> getChildren() {
@@ -32,8 +48,18 @@ public class Node {
         return path;
     }
 
+    /**
+     * change the path and with it the id of this Node; must not be called while the Node is contained in a NodeSet
+     * or a hash based collection
+     */
     public void setPath(String path) {
         this.path = path;
+        setId(path);
+    }
+
+    private void setId(String path) {
+        idKey = PATH_IDS.get(path);
+        id = idKey.getId();
     }
 
     public String getFilename() {
@@ -52,12 +78,67 @@ public class Node {
         this.packageName = packageName;
     }
 
+    /**
+     * @return files and packages this Node has dependencies on
+     *   for a file its own dependencies, which can be added to
+     *   for a package the dependencies of all files below it without duplicates in the order of the tree; they are
+     *   derived from the files when asked for, cached in the PackageDependencyCache of the tree and can not be
+     *   modified. The dependencies of the files must be complete before, the cache is dropped by freeze().
+     */
     public List<Node> getDependencies() {
-        return dependencies;
+        if (!aggregatesDependencies()) {
+            return dependencies;
+        }
+        PackageDependencyCache cache = getRoot().getPackageDependencyCache();
+        NodeSet aggregated = cache.get(this);
+        if (aggregated == null) {
+            aggregated = new NodeSet();
+            aggregateDependencies(this, aggregated);
+            aggregated.freeze();
+            cache.put(this, aggregated);
+        }
+        return aggregated;
+    }
+
+    private static void aggregateDependencies(Node node, NodeSet aggregated) {
+        for (Node child : node.children) {
+            if (child.aggregatesDependencies()) {
+                aggregateDependencies(child, aggregated);
+            } else {
+                aggregated.addAll(child.dependencies);
+            }
+        }
     }
 
+    /**
+     * replace the dependencies of this Node, duplicates are dropped. A package keeps the given dependencies instead
+     * of deriving them from its files, e.g. the root has none.
+     */
     public void setDependencies(List<Node> dependencies) {
-        this.dependencies = dependencies;
+        this.dependencies = new NodeSet(dependencies);
+        this.fixedDependencies = true;
+    }
+
+    /**
+     * @return true if this Node is a package whose dependencies are derived from its files, see getDependencies()
+     */
+    public boolean aggregatesDependencies() {
+        return hasChildren() && !fixedDependencies;
+    }
+
+    private Node getRoot() {
+        Node root = this;
+        while (root.parent != null) {
+            root = root.parent;
+        }
+        return root;
+    }
+
+    private synchronized PackageDependencyCache getPackageDependencyCache() {
+        if (packageDependencies == null) {
+            packageDependencies = new PackageDependencyCache();
+        }
+        return packageDependencies;
     }
 
     public boolean hasChildren() {
@@ -65,7 +146,7 @@ public class Node {
     }
 
     public boolean hasDependencies() {
-        return !dependencies.isEmpty();
+        return !getDependencies().isEmpty();
     }
 
     public Node getChildByName(String name) {
@@ -79,33 +160,63 @@ public class Node {
         return null;
     }
 
-    public List<String> countDependenciesOn(Node node) {
-        // create list which contains all dependencies and sub dependencies on @node
-        List<String> counter = new ArrayList<>();
-        // if @this is not already in that list
-        for (Node dependency : dependencies) {
-            // add this to the dependency list
-            // check if @this has a dependency on @node
-            // if @this is a file and @node is a file or @this is a folder and @node is a file
-            //   dependency.equals
-            // else if @this is a file and @node is a folder or @this is a folder and @node is a folder
-            //   dependency.contains(@node.packageName)
-            if (!this.hasChildren() && !node.hasChildren() || this.hasChildren() && !node.hasChildren()) {
-                if (dependency.equals(node)) {
-                    counter.add(this.packageName.equals("") ? this.filename : this.packageName);
-                }
-            } else if (!this.hasChildren() && node.hasChildren() || this.hasChildren() && node.hasChildren()) {
-                if (dependency.getPackageName().contains(node.getPackageName().equals("") ? node.getFilename() : node.getPackageName()) ||
-                        dependency.getPath().contains((node.getPackageName().equals("") ? node.getFilename() : node.getPackageName()).replaceAll("\\.", "/"))) {
-                    counter.add(this.packageName.equals("") ? this.filename : this.packageName);
-                }
+    /**
+     * count the dependencies this Node has on a given Node without allocating anything once the dependencies of a
+     * package are cached
+     *   if @node is a file a dependency counts if it is @node
+     *   if @node is a package a dependency counts if it lies in @node or in a package with the same name in another
+     *   module, see isPartOf(Node dependency, Node node)
+     *
+     * @param node Node to count the dependencies on
+     * @return number of dependencies on @node
+     */
+    public int countDependencies(Node node) {
+        int count = 0;
+        for (Node dependency : getDependencies()) {
+            if (isPartOf(dependency, node)) {
+                count++;
             }
         }
-        return counter;
+        return count;
     }
 
+    /**
+     * Allocates a List only to be counted; countDependencies(Node node) and hasDependencyOn(Node node) do not allocate.
+     *
+     * @return List containing the name of this Node once for every dependency on @node
+     */
+    public List<String> countDependenciesOn(Node node) {
+        return Collections.nCopies(countDependencies(node), toString());
+    }
+
+    /**
+     * @return true if this Node has at least one dependency on @node; stops at the first one found
+     */
     public boolean hasDependencyOn(Node node) {
-        return !countDependenciesOn(node).isEmpty();
+        for (Node dependency : getDependencies()) {
+            if (isPartOf(dependency, node)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * check if a dependency is a given file or lies in a given package. Package membership is resolved by walking up
+     * the parent links of the dependency and comparing
+     *   the package id for packages, so equally named packages in different modules match
+     *   the id for modules, so a dependency on a Node replaced by TreeUpdate still lies in the copy of its module
+     */
+    private static boolean isPartOf(Node dependency, Node node) {
+        if (!node.hasChildren()) {
+            return dependency.id == node.id;
+        }
+        for (Node ancestor = dependency; ancestor != null; ancestor = ancestor.parent) {
+            if (ancestor.id == node.id || node.packageId >= 0 && ancestor.packageId == node.packageId) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
@@ -113,6 +224,15 @@ public class Node {
         return packageName.equals("") ? filename : packageName;
     }
 
+    /**
+     * @return canonical id of the path of this Node, equal for all reachable Node objects with the same path; used by
+     * equals, hashCode and NodeSet. The id is dropped and may be given to another path once no Node with the path is
+     * reachable anymore, see PathIds.
+     */
+    public int getId() {
+        return id;
+    }
+
     public int getLayer() {
         return layer;
     }
@@ -121,26 +241,100 @@ public class Node {
         this.layer = layer;
     }
 
+    public Node getParent() {
+        return parent;
+    }
+
+    public void setParent(Node parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * @return id of the qualified package name of this package, equal for packages with the same name in different
+     * modules; -1 for files, modules and nodes which are not indexed
+     */
+    public int getPackageId() {
+        return packageId;
+    }
+
+    public void setPackageId(int packageId) {
+        this.packageId = packageId;
+    }
+
+    /**
+     * @return groups of children which depend on each other in a cycle, set by DependencyTree.setLayer(Node node)
+     */
+    public List<List<Node>> getCycles() {
+        return cycles;
+    }
+
+    public void setCycles(List<List<Node>> cycles) {
+        this.cycles = cycles;
+    }
+
+    /**
+     * make the children, dependencies and cycles of this Node and all its descendants unmodifiable, so the tree can be
+     * shared with readers once it is complete. Package dependencies cached while the tree was built are dropped, they
+     * are derived again in the final order of the tree.
+     */
+    public void freeze() {
+        freezeNode();
+        for (Node child : children) {
+            child.freeze();
+        }
+    }
+
+    /**
+     * freeze this Node like freeze() but not its descendants, e.g. a copy made by TreeUpdate whose children are
+     * frozen already
+     */
+    void freezeNode() {
+        synchronized (this) {
+            packageDependencies = null;
+        }
+        children = Collections.unmodifiableList(children);
+        dependencies.freeze();
+        List<List<Node>> frozenCycles = new ArrayList<>(cycles.size());
+        for (List<Node> cycle : cycles) {
+            frozenCycles.add(Collections.unmodifiableList(cycle));
+        }
+        cycles = Collections.unmodifiableList(frozenCycles);
+    }
+
+    /**
+     * copy this Node of a frozen tree, so TreeUpdate can change the copy while readers still use the frozen Node. The
+     * copy has the same id, parent, layer and package id, modifiable lists of the children and cycles and shares the
+     * frozen dependencies until they are replaced with setDependencies.
+     */
+    Node copy() {
+        Node copy = new Node(new ArrayList<>(children), path, filename, packageName);
+        copy.dependencies = dependencies;
+        copy.fixedDependencies = fixedDependencies;
+        copy.layer = layer;
+        copy.parent = parent;
+        copy.packageId = packageId;
+        List<List<Node>> copiedCycles = new ArrayList<>(cycles.size());
+        for (List<Node> cycle : cycles) {
+            copiedCycles.add(new ArrayList<>(cycle));
+        }
+        copy.cycles = copiedCycles;
+        return copy;
+    }
+
     public void incrementLayer() {
         this.layer++;
     }
 
+    /**
+     * two Node objects are equal if they have the same path, compared by their canonical id in constant time
+     */
     @Override
     public boolean equals(Object obj) {
-        // @this equals @obj if
-        //   @obj is a Node-object and
-        //   @this.filename equals @obj.filename and
-        //   @this.packageName equals @obj.packageName and
-        //   @this.path equals @obj.path and
-        //   @this.dependencies equals @obj.dependencies and
-        //   @this.children equals @obj.children and
-        if (obj instanceof Node) {
-            return this.filename.equals(((Node) obj).getFilename()) &&
-                    this.packageName.equals(((Node) obj).getPackageName()) &&
-                    this.path.equals(((Node) obj).path) &&
-                    this.children.equals(((Node) obj).getChildren()) &&
-                    this.dependencies.equals(((Node) obj).getDependencies());
-        }
-        return false;
+        return obj == this || obj instanceof Node && ((Node) obj).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
     }
 }
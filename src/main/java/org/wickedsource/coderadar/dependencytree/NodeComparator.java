@@ -1,9 +1,201 @@
 package org.wickedsource.coderadar.dependencytree;
 
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.function.IntBinaryOperator;
 
+/**
+ * Order of siblings in the tree: siblings with dependencies on others come before them. Comparing two siblings
+ * directly is not transitive if siblings depend on each other in cycles, so sorting with this Comparator can fail
+ * with "Comparison method violates its general contract!". Use sort(List siblings), which never relies on
+ * transitivity.
+ */
 public class NodeComparator implements Comparator<Node> {
     public int compare(Node o1, Node o2) {
+        return compare(o1, o2, o1.countDependencies(o2), o2.countDependencies(o1));
+    }
+
+    /**
+     * sort a list of siblings in the order of compare(Node o1, Node o2) without relying on it being transitive. The
+     * dependencies between every pair of siblings are counted only once in a SiblingDependencyMatrix.
+     *   sibling i has to come before sibling j if it has more dependencies on j than j has on i
+     *   these precedences form a graph, its cycles (strongly connected components) are kept together and their
+     *   siblings ordered by the tie breakers of compare: number of dependencies, packages first, filename
+     *   the components are ordered topologically, of all components whose predecessors are placed the one with the
+     *   sibling first by the tie breakers is placed next
+     * If compare is a consistent order of the siblings the precedence graph has no cycles and the result is the same
+     * as list.sort(new NodeComparator()). Otherwise the result is still a deterministic order instead of an exception.
+     *
+     * @param siblings children of one Node, sorted in place
+     */
+    public static void sort(List<Node> siblings) {
+        if (siblings.size() < 2) {
+            return;
+        }
+        SiblingDependencyMatrix<Node> matrix = new SiblingDependencyMatrix<>(NodeTreeView.INSTANCE, siblings);
+        int size = matrix.size();
+        // the tie breakers only compare properties of each sibling, so they are transitive
+        String[] filenames = new String[size];
+        int[] byTieBreakers = new int[size];
+        for (int i = 0; i < size; i++) {
+            filenames[i] = matrix.getSibling(i).getFilename();
+            byTieBreakers[i] = i;
+        }
+        sortIndices(byTieBreakers, (i1, i2) -> compareTieBreakers(matrix.getDependencyCount(i1),
+                matrix.getDependencyCount(i2), matrix.isPackage(i1), matrix.isPackage(i2), filenames[i1],
+                filenames[i2]));
+
+        // a sibling only has to come before siblings it has dependencies on
+        int[][] successors = new int[size][];
+        int[] row = new int[size];
+        for (int i = 0; i < size; i++) {
+            int[] targets = matrix.getDependencyTargets(i);
+            int count = 0;
+            for (int j : targets) {
+                if (matrix.countDependencies(i, j) > matrix.countDependencies(j, i)) {
+                    row[count++] = j;
+                }
+            }
+            successors[i] = count == targets.length ? targets : Arrays.copyOf(row, count);
+        }
+        int[] component = new int[size];
+        int componentCount = SiblingLayering.findComponents(successors, component);
+        // members of every component in the order of the tie breakers, members[memberOffsets[c]] to
+        // members[memberOffsets[c + 1] - 1]; a component ranks like its first member
+        int[] memberOffsets = new int[componentCount + 1];
+        for (int i = 0; i < size; i++) {
+            memberOffsets[component[i] + 1]++;
+        }
+        for (int c = 0; c < componentCount; c++) {
+            memberOffsets[c + 1] += memberOffsets[c];
+        }
+        int[] members = new int[size];
+        int[] memberCounts = new int[componentCount];
+        // component with a given rank, -1 for ranks of siblings which are not the first member of their component
+        int[] componentOfRank = new int[size];
+        for (int r = 0; r < size; r++) {
+            int c = component[byTieBreakers[r]];
+            componentOfRank[r] = memberCounts[c] == 0 ? c : -1;
+            members[memberOffsets[c] + memberCounts[c]++] = byTieBreakers[r];
+        }
+        int[] componentRank = new int[componentCount];
+        for (int r = 0; r < size; r++) {
+            if (componentOfRank[r] >= 0) {
+                componentRank[componentOfRank[r]] = r;
+            }
+        }
+        int[] predecessors = new int[componentCount];
+        for (int i = 0; i < size; i++) {
+            for (int j : successors[i]) {
+                if (component[i] != component[j]) {
+                    predecessors[component[j]]++;
+                }
+            }
+        }
+
+        // the ranks of the components ready to be placed; ranks are distinct, so the heap holds ranks only
+        IntHeap ready = new IntHeap(componentCount);
+        // pushed in ascending order, so no push has to move an element
+        for (int r = 0; r < size; r++) {
+            if (componentOfRank[r] >= 0 && predecessors[componentOfRank[r]] == 0) {
+                ready.push(r);
+            }
+        }
+        ListIterator<Node> iterator = siblings.listIterator();
+        while (!ready.isEmpty()) {
+            int c = componentOfRank[ready.pop()];
+            for (int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++) {
+                int i = members[m];
+                iterator.next();
+                iterator.set(matrix.getSibling(i));
+                for (int j : successors[i]) {
+                    if (component[j] != c && --predecessors[component[j]] == 0) {
+                        ready.push(componentRank[component[j]]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * stable merge sort of int values by a comparator, without boxing them. Runs which are in order already are not
+     * merged, so sorting values which are mostly sorted, e.g. siblings by filename, takes about one comparison each.
+     */
+    private static void sortIndices(int[] values, IntBinaryOperator comparator) {
+        int[] buffer = new int[values.length];
+        for (int width = 1; width < values.length; width *= 2) {
+            for (int from = 0; from < values.length - width; from += 2 * width) {
+                int middle = from + width;
+                if (comparator.applyAsInt(values[middle - 1], values[middle]) <= 0) {
+                    continue;
+                }
+                int to = Math.min(from + 2 * width, values.length);
+                System.arraycopy(values, from, buffer, from, to - from);
+                int left = from;
+                int right = middle;
+                for (int k = from; k < to; k++) {
+                    if (right >= to || left < middle && comparator.applyAsInt(buffer[left], buffer[right]) <= 0) {
+                        values[k] = buffer[left++];
+                    } else {
+                        values[k] = buffer[right++];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * binary min heap of ints
+     */
+    private static final class IntHeap {
+
+        private final int[] heap;
+        private int size;
+
+        IntHeap(int capacity) {
+            heap = new int[capacity];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(int value) {
+            int k = size++;
+            while (k > 0 && heap[(k - 1) / 2] > value) {
+                heap[k] = heap[(k - 1) / 2];
+                k = (k - 1) / 2;
+            }
+            heap[k] = value;
+        }
+
+        int pop() {
+            int top = heap[0];
+            int last = heap[--size];
+            int k = 0;
+            while (2 * k + 1 < size) {
+                int child = 2 * k + 1;
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (last <= heap[child]) {
+                    break;
+                }
+                heap[k] = heap[child];
+                k = child;
+            }
+            heap[k] = last;
+            return top;
+        }
+    }
+
+    /**
+     * @param dependencies12 number of dependencies o1 has on o2
+     * @param dependencies21 number of dependencies o2 has on o1
+     */
+    private static int compare(Node o1, Node o2, int dependencies12, int dependencies21) {
         // if o1 has a dependency on o2 and o2 does not have an dependency on o1
         //   o1 is before o2
         // else if o2 has a dependency on o1 and o1 does not have an dependency on o2
@@ -21,24 +213,36 @@ public class NodeComparator implements Comparator<Node> {
         // else if o2 is a directory and o1 is not
         //   o2 is before o1
         // else compare o1 and o2 lexically
-        if (o1.hasDependencyOn(o2) && !o2.hasDependencyOn(o1)) {
+        if (dependencies12 > 0 && dependencies21 == 0) {
             return -1;
-        } else if (o2.hasDependencyOn(o1) && !o1.hasDependencyOn(o2)) {
+        } else if (dependencies21 > 0 && dependencies12 == 0) {
             return 1;
-        } else if (o1.countDependenciesOn(o2).size() > o2.countDependenciesOn(o1).size()) {
+        } else if (dependencies12 > dependencies21) {
             return -1;
-        } else if (o1.countDependenciesOn(o2).size() < o2.countDependenciesOn(o1).size()) {
+        } else if (dependencies12 < dependencies21) {
             return 1;
-        } else if (o1.getDependencies().size() > o2.getDependencies().size()) {
+        } else {
+            return compareTieBreakers(o1.getDependencies().size(), o2.getDependencies().size(), o1.hasChildren(),
+                    o2.hasChildren(), o1.getFilename(), o2.getFilename());
+        }
+    }
+
+    /**
+     * compare two siblings which have as many dependencies on each other by their number of dependencies, whether
+     * they are packages and their filenames
+     */
+    private static int compareTieBreakers(int dependencies1, int dependencies2, boolean package1, boolean package2,
+                                          String filename1, String filename2) {
+        if (dependencies1 > dependencies2) {
             return -1;
-        } else if (o1.getDependencies().size() < o2.getDependencies().size()) {
+        } else if (dependencies1 < dependencies2) {
             return 1;
-        } else if (o1.hasChildren() && !o2.hasChildren()) {
+        } else if (package1 && !package2) {
             return -1;
-        } else if (!o1.hasChildren() && o2.hasChildren()) {
+        } else if (!package1 && package2) {
             return 1;
         } else {
-            return o1.getFilename().compareTo(o2.getFilename());
+            return filename1.compareTo(filename2);
         }
     }
 }
@@ -0,0 +1,179 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.util.*;
+
+/**
+ * Hash index over a tree of Node objects to resolve dependencies without walking the tree.
+ * Names are qualified names relative to the base package, e.g. "core.service.FooService" for a file and
+ * "core.service" for a package. Packages with the same name in different modules are merged, so a name can
+ * resolve to more than one Node.
+ * Building the index also links every Node to its parent and gives every package the id of its qualified name,
+ * which Node uses to check package membership.
+ * The index of a tree updated by TreeUpdate is derived from the index of the previous tree: it only holds the names
+ * the updates changed and looks up every other name in the index the first tree was built with.
+ */
+public class NodeIndex {
+
+    private final Map<String, List<Node>> files;
+    private final Map<String, List<Node>> packages;
+    private final Map<String, List<Node>> packageChildren;
+    private final Map<String, Integer> packageIds;
+    // index built from a tree which this index was derived from, null if this index was built from a tree itself
+    private final NodeIndex base;
+
+    /**
+     * build the index for a given tree
+     *
+     * @param baseroot either a directory containing modules (empty packageName) or the base package itself
+     */
+    public NodeIndex(Node baseroot) {
+        files = new HashMap<>();
+        packages = new HashMap<>();
+        packageChildren = new HashMap<>();
+        packageIds = new HashMap<>();
+        base = null;
+        baseroot.setParent(null);
+        if (baseroot.getPackageName().equals("")) {
+            addModule(baseroot);
+        } else {
+            for (Node child : baseroot.getChildren()) {
+                child.setParent(baseroot);
+                addPackageTree(child, "");
+            }
+            packageChildren.computeIfAbsent("", key -> new ArrayList<>()).addAll(baseroot.getChildren());
+        }
+    }
+
+    /**
+     * derive the index of an updated tree from the index of the previous tree. The given entries replace the entries
+     * of the previous index, an empty List removes a name. The packages of both trees have to be the same, so they keep
+     * their ids. Unlike NodeIndex(Node baseroot) this does not link any Node to its parent.
+     *
+     * @param previous        index of the tree before the update
+     * @param files           changed files by qualified name
+     * @param packages        changed packages by qualified name
+     * @param packageChildren changed children of packages by qualified package name
+     */
+    NodeIndex(NodeIndex previous, Map<String, List<Node>> files, Map<String, List<Node>> packages,
+              Map<String, List<Node>> packageChildren) {
+        base = previous.base != null ? previous.base : previous;
+        this.files = previous.base != null ? new HashMap<>(previous.files) : new HashMap<>();
+        this.files.putAll(files);
+        this.packages = previous.base != null ? new HashMap<>(previous.packages) : new HashMap<>();
+        this.packages.putAll(packages);
+        this.packageChildren = previous.base != null ? new HashMap<>(previous.packageChildren) : new HashMap<>();
+        this.packageChildren.putAll(packageChildren);
+        packageIds = previous.packageIds;
+    }
+
+    /**
+     * helper method for NodeIndex(Node baseroot). Children of a module are either modules themselves or
+     * top level packages and files of the base package.
+     */
+    private void addModule(Node module) {
+        for (Node child : module.getChildren()) {
+            child.setParent(module);
+            if (child.getPackageName().equals("")) {
+                addModule(child);
+            } else {
+                addPackageTree(child, "");
+                packageChildren.computeIfAbsent("", key -> new ArrayList<>()).add(child);
+            }
+        }
+    }
+
+    /**
+     * helper method for NodeIndex(Node baseroot)
+     *
+     * @param parentName qualified name of the parent package, empty for the base package
+     */
+    private void addPackageTree(Node node, String parentName) {
+        String name = parentName.isEmpty() ? node.getFilename() : parentName + "." + node.getFilename();
+        if (node.hasChildren()) {
+            packages.computeIfAbsent(name, key -> new ArrayList<>()).add(node);
+            packageChildren.computeIfAbsent(name, key -> new ArrayList<>()).addAll(node.getChildren());
+            node.setPackageId(packageIds.computeIfAbsent(name, key -> packageIds.size()));
+            for (Node child : node.getChildren()) {
+                child.setParent(node);
+                addPackageTree(child, name);
+            }
+        } else if (name.endsWith(".java")) {
+            files.computeIfAbsent(name.substring(0, name.length() - ".java".length()), key -> new ArrayList<>()).add(node);
+        }
+    }
+
+    /**
+     * resolve a dependency found in a file
+     *   a wildcard import (ending with '*') resolves to all children of the package
+     *   a class name resolves to its file. Names of nested classes or members resolve to the file of the
+     *   enclosing class.
+     *
+     * @param name qualified name relative to the base package
+     * @return List of Node objects the name resolves to, empty if it is not part of the tree
+     */
+    public List<Node> resolve(String name) {
+        if (name.endsWith("*")) {
+            String packageName = name.length() > 1 ? name.substring(0, name.length() - 2) : "";
+            return getPackageChildren(packageName);
+        }
+        String className = name;
+        while (true) {
+            List<Node> nodes = getFiles(className);
+            if (!nodes.isEmpty()) {
+                return nodes;
+            }
+            int lastDot = className.lastIndexOf('.');
+            if (lastDot < 0) {
+                return Collections.emptyList();
+            }
+            className = className.substring(0, lastDot);
+        }
+    }
+
+    /**
+     * @param name qualified package name relative to the base package
+     * @return all package Node objects with the given name
+     */
+    public List<Node> getPackages(String name) {
+        return get(packages, base != null ? base.packages : null, name);
+    }
+
+    /**
+     * @param name qualified class name relative to the base package, without the names of nested classes
+     * @return all file Node objects of the class, more than one if modules contain the same class
+     */
+    List<Node> getFiles(String name) {
+        return get(files, base != null ? base.files : null, name);
+    }
+
+    /**
+     * @param name qualified package name relative to the base package, empty for the base package
+     * @return the children of all packages with the given name, in the order the tree was built in
+     */
+    List<Node> getPackageChildren(String name) {
+        return get(packageChildren, base != null ? base.packageChildren : null, name);
+    }
+
+    /**
+     * @return number of names in the index built from a tree, see getChangedSize()
+     */
+    int size() {
+        return base != null ? base.size() : files.size() + packages.size() + packageChildren.size();
+    }
+
+    /**
+     * @return number of names which changed since the index was built from a tree; Node objects the changed names
+     * replaced may still be referenced by the dependencies of unchanged files
+     */
+    int getChangedSize() {
+        return base != null ? files.size() + packages.size() + packageChildren.size() : 0;
+    }
+
+    private static List<Node> get(Map<String, List<Node>> entries, Map<String, List<Node>> baseEntries, String name) {
+        List<Node> nodes = entries.get(name);
+        if (nodes == null && baseEntries != null) {
+            nodes = baseEntries.get(name);
+        }
+        return nodes != null ? nodes : Collections.emptyList();
+    }
+}
@@ -5,9 +5,21 @@ import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 
 import java.io.IOException;
+import java.util.List;
 
+/**
+ * Writes a tree as nested nodes. If the Integer attribute MAX_DEPTH is set on the ObjectWriter, nodes at that depth
+ * below the written node are collapsed: their children and dependencies are left out and only counted in
+ * "childCount" and "dependencyCount".
+ * Trees which are not made of Node objects, e.g. a ColumnarTree, are written the same way with writeTree.
+ */
 public class NodeSerializer extends StdSerializer<Node> {
 
+    /**
+     * attribute limiting the depth of the written tree, see ObjectWriter.withAttribute; negative writes every node
+     */
+    public static final String MAX_DEPTH = "maxDepth";
+
     public NodeSerializer() {
         this(null);
     }
@@ -16,31 +28,81 @@ public class NodeSerializer extends StdSerializer<Node> {
         super(t);
     }
 
+    /**
+     * @return depth at which nodes are collapsed, -1 if the tree is written completely
+     */
+    static int getMaxDepth(SerializerProvider provider) {
+        Object maxDepth = provider.getAttribute(MAX_DEPTH);
+        return maxDepth instanceof Integer ? (Integer) maxDepth : -1;
+    }
+
     @Override
     public void serialize(Node node, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        writeNode(NodeTreeView.INSTANCE, node, getMaxDepth(provider), gen);
+    }
+
+    /**
+     * write a node of any TreeView like serialize writes a Node
+     *
+     * @param view     tree the node belongs to
+     * @param node     node to write
+     * @param maxDepth depth at which nodes are collapsed, negative writes the tree completely
+     */
+    public static <N> void writeTree(TreeView<N> view, N node, int maxDepth, JsonGenerator gen) throws IOException {
+        writeNode(view, node, maxDepth, gen);
+    }
+
+    /**
+     * @param depthLeft number of levels of children to write below the node, negative for all
+     */
+    private static <N> void writeNode(TreeView<N> view, N node, int depthLeft, JsonGenerator gen) throws IOException {
+        List<N> children = view.getChildren(node);
+        boolean collapsed = depthLeft == 0 && !children.isEmpty();
+        // the dependencies of a package may be computed by the view, so they are only asked for once
+        List<N> dependencies = view.getDependencies(node);
         gen.writeStartObject();
-        gen.writeStringField("filename",node.getFilename());
-        gen.writeStringField("path",node.getPath());
-        gen.writeStringField("packageName",node.getPackageName());
+        gen.writeStringField("filename",view.getFilename(node));
+        gen.writeStringField("path",view.getPath(node));
+        gen.writeStringField("packageName",view.getPackageName(node));
         gen.writeArrayFieldStart("children");
-        for(Node child : node.getChildren()){
-            gen.writeObject(child);
+        if(!collapsed){
+            for(N child : children){
+                writeNode(view, child, depthLeft - 1, gen);
+            }
         }
         gen.writeEndArray();
         gen.writeArrayFieldStart("dependencies");
-        for(Node dependency : node.getDependencies()){
-            gen.writeStartObject();
-            gen.writeStringField("filename",dependency.getFilename());
-            gen.writeStringField("path",dependency.getPath());
-            gen.writeStringField("packageName",dependency.getPackageName());
-            gen.writeArrayFieldStart("children");
-            gen.writeEndArray();
-            gen.writeArrayFieldStart("dependencies");
-            gen.writeEndArray();
-            gen.writeEndObject();
+        if(!collapsed){
+            for(N dependency : dependencies){
+                gen.writeStartObject();
+                gen.writeStringField("filename",view.getFilename(dependency));
+                gen.writeStringField("path",view.getPath(dependency));
+                gen.writeStringField("packageName",view.getPackageName(dependency));
+                gen.writeArrayFieldStart("children");
+                gen.writeEndArray();
+                gen.writeArrayFieldStart("dependencies");
+                gen.writeEndArray();
+                gen.writeEndObject();
+            }
         }
         gen.writeEndArray();
-        gen.writeNumberField("layer",node.getLayer());
+        gen.writeNumberField("layer",view.getLayer(node));
+        List<List<N>> cycles = view.getCycles(node);
+        if(collapsed){
+            gen.writeBooleanField("collapsed",true);
+            gen.writeNumberField("childCount",children.size());
+            gen.writeNumberField("dependencyCount",dependencies.size());
+        }else if(!cycles.isEmpty()){
+            gen.writeArrayFieldStart("cycles");
+            for(List<N> cycle : cycles){
+                gen.writeStartArray();
+                for(N member : cycle){
+                    gen.writeString(view.getFilename(member));
+                }
+                gen.writeEndArray();
+            }
+            gen.writeEndArray();
+        }
         gen.writeEndObject();
     }
 }
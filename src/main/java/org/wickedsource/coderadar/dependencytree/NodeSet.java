@@ -0,0 +1,179 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * List of distinct Node objects in insertion order, used for dependencies. Membership is kept in an open addressing
+ * hash set of Node ids, so contains and add are O(1) and adding a Node which is already contained does nothing.
+ * Iteration order is the order the nodes were first added in, so serialization stays deterministic.
+ * After freeze() the set can not be modified anymore.
+ */
+public class NodeSet extends AbstractList<Node> {
+
+    private static final int EMPTY = -1;
+
+    private final List<Node> nodes;
+    private int[] ids;
+    private boolean frozen;
+
+    public NodeSet() {
+        nodes = new ArrayList<>();
+        ids = new int[8];
+        Arrays.fill(ids, EMPTY);
+    }
+
+    public NodeSet(Collection<Node> nodes) {
+        this();
+        addAll(nodes);
+    }
+
+    /**
+     * make this set unmodifiable, every later modification throws an UnsupportedOperationException
+     */
+    public void freeze() {
+        frozen = true;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("NodeSet is frozen");
+        }
+    }
+
+    @Override
+    public Node get(int index) {
+        return nodes.get(index);
+    }
+
+    @Override
+    public int size() {
+        return nodes.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Node && ids[slot(((Node) o).getId())] != EMPTY;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return contains(o) ? nodes.indexOf(o) : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    /**
+     * add a Node at the end if it is not contained yet
+     *
+     * @return true if the Node was added
+     */
+    @Override
+    public boolean add(Node node) {
+        checkNotFrozen();
+        if (!insertId(node.getId())) {
+            return false;
+        }
+        nodes.add(node);
+        return true;
+    }
+
+    /**
+     * insert a Node at a position if it is not contained yet
+     */
+    @Override
+    public void add(int index, Node node) {
+        checkNotFrozen();
+        if (insertId(node.getId())) {
+            nodes.add(index, node);
+        }
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Node> c) {
+        boolean changed = false;
+        for (Node node : c) {
+            changed |= add(node);
+        }
+        return changed;
+    }
+
+    @Override
+    public Node remove(int index) {
+        checkNotFrozen();
+        Node removed = nodes.remove(index);
+        rehash(ids.length);
+        return removed;
+    }
+
+    @Override
+    public Node set(int index, Node node) {
+        checkNotFrozen();
+        Node replaced = nodes.get(index);
+        if (replaced.getId() != node.getId()) {
+            if (contains(node)) {
+                throw new IllegalArgumentException("Node is already contained: " + node);
+            }
+            nodes.set(index, node);
+            rehash(ids.length);
+        } else {
+            nodes.set(index, node);
+        }
+        return replaced;
+    }
+
+    @Override
+    public void clear() {
+        checkNotFrozen();
+        nodes.clear();
+        Arrays.fill(ids, EMPTY);
+    }
+
+    /**
+     * @return true if the id was not contained and has been added
+     */
+    private boolean insertId(int id) {
+        int slot = slot(id);
+        if (ids[slot] != EMPTY) {
+            return false;
+        }
+        // keep the table at most half full
+        if ((nodes.size() + 1) * 2 > ids.length) {
+            rehash(ids.length * 2);
+            slot = slot(id);
+        }
+        ids[slot] = id;
+        return true;
+    }
+
+    /**
+     * @return slot containing the id or the empty slot it would be inserted in
+     */
+    private int slot(int id) {
+        int mask = ids.length - 1;
+        int slot = mix(id) & mask;
+        while (ids[slot] != EMPTY && ids[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        ids = new int[capacity];
+        Arrays.fill(ids, EMPTY);
+        for (Node node : nodes) {
+            ids[slot(node.getId())] = node.getId();
+        }
+    }
+
+    private static int mix(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,69 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.util.List;
+
+/**
+ * TreeView of a tree of Node objects, every Node is its own handle
+ */
+public class NodeTreeView implements TreeView<Node> {
+
+    public static final NodeTreeView INSTANCE = new NodeTreeView();
+
+    private NodeTreeView() {
+    }
+
+    @Override
+    public String getFilename(Node node) {
+        return node.getFilename();
+    }
+
+    @Override
+    public String getPath(Node node) {
+        return node.getPath();
+    }
+
+    @Override
+    public String getPackageName(Node node) {
+        return node.getPackageName();
+    }
+
+    @Override
+    public int getLayer(Node node) {
+        return node.getLayer();
+    }
+
+    @Override
+    public List<Node> getChildren(Node node) {
+        return node.getChildren();
+    }
+
+    @Override
+    public List<Node> getDependencies(Node node) {
+        return node.getDependencies();
+    }
+
+    @Override
+    public List<List<Node>> getCycles(Node node) {
+        return node.getCycles();
+    }
+
+    @Override
+    public Node getParent(Node node) {
+        return node.getParent();
+    }
+
+    @Override
+    public int getPackageId(Node node) {
+        return node.getPackageId();
+    }
+
+    @Override
+    public int getId(Node node) {
+        return node.getId();
+    }
+
+    @Override
+    public boolean hasChildren(Node node) {
+        return node.hasChildren();
+    }
+}
@@ -0,0 +1,28 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * OutputStream which only flushes the stream it wraps when it is closed, e.g. the output stream of a servlet
+ * response which the container closes itself. Lets a stream wrapping it, like a GZIPOutputStream, be closed to
+ * release its resources.
+ */
+public class NonClosingOutputStream extends FilterOutputStream {
+
+    public NonClosingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        // FilterOutputStream writes arrays byte by byte
+        out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+}
@@ -0,0 +1,65 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of the dependencies of the packages of one tree, see Node.getDependencies(). The dependencies of a package
+ * are derived from its files whenever they are asked for, the cache keeps the derived NodeSet of recently used
+ * packages so a package is not walked again for every query. The cache holds at most maximumDependencies
+ * dependencies in total and evicts the least recently used packages when it is full, so the memory of a deep tree
+ * does not grow with the number of packages every dependency lies in. Safe to use from multiple threads.
+ */
+public class PackageDependencyCache {
+
+    public static final int DEFAULT_MAXIMUM_DEPENDENCIES = 1 << 18;
+
+    private final int maximumDependencies;
+    private final Map<Node, NodeSet> dependencies;
+    private int size;
+
+    public PackageDependencyCache() {
+        this(DEFAULT_MAXIMUM_DEPENDENCIES);
+    }
+
+    /**
+     * @param maximumDependencies number of dependencies of all cached packages after which the least recently used
+     *                            packages are evicted
+     */
+    public PackageDependencyCache(int maximumDependencies) {
+        this.maximumDependencies = maximumDependencies;
+        // access order makes the first entry the least recently used one; nodes of one tree are distinct by path
+        this.dependencies = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @return cached dependencies of a package, null if they are not cached
+     */
+    public synchronized NodeSet get(Node node) {
+        return dependencies.get(node);
+    }
+
+    /**
+     * cache the dependencies of a package; dependencies larger than the whole cache are not cached
+     */
+    public synchronized void put(Node node, NodeSet nodeDependencies) {
+        if (nodeDependencies.size() > maximumDependencies) {
+            return;
+        }
+        NodeSet replaced = dependencies.put(node, nodeDependencies);
+        size += nodeDependencies.size() - (replaced != null ? replaced.size() : 0);
+        Iterator<NodeSet> eldest = dependencies.values().iterator();
+        while (size > maximumDependencies) {
+            size -= eldest.next().size();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * @return number of dependencies of all cached packages
+     */
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,93 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Canonical ids of paths, see Node.getId(). An id is only kept as long as an object holding its Key is reachable:
+ * every Node holds the Key of its path, so the id of a path is dropped once all Node objects with that path have been
+ * garbage collected, e.g. the trees of evicted projects or deleted files. Dropped ids are reused, so ids stay as small
+ * as the number of paths in use. Safe to use from multiple threads.
+ */
+public class PathIds {
+
+    private final Map<String, KeyReference> keys = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Key> released = new ReferenceQueue<>();
+    private final Queue<Integer> freeIds = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * @return Key of the id of a path, the same as long as the Key is reachable
+     */
+    public Key get(String path) {
+        expunge();
+        while (true) {
+            KeyReference reference = keys.get(path);
+            Key key = reference != null ? reference.get() : null;
+            if (key != null) {
+                return key;
+            }
+            Integer freeId = freeIds.poll();
+            Key created = new Key(freeId != null ? freeId : nextId.getAndIncrement());
+            KeyReference createdReference = new KeyReference(created, path, released);
+            if (reference == null ? keys.putIfAbsent(path, createdReference) == null
+                    : keys.replace(path, reference, createdReference)) {
+                return created;
+            }
+            // another thread created the Key first; a cleared reference is not enqueued, so the id is freed only here
+            createdReference.clear();
+            freeIds.add(created.id);
+        }
+    }
+
+    /**
+     * remove the paths whose Key has been garbage collected and free their ids
+     */
+    public void expunge() {
+        KeyReference reference;
+        while ((reference = (KeyReference) released.poll()) != null) {
+            keys.remove(reference.path, reference);
+            freeIds.add(reference.id);
+        }
+    }
+
+    /**
+     * @return number of paths with an id, including paths whose Key has been collected but not expunged yet
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * id of a path, kept alive by the objects holding it
+     */
+    public static final class Key {
+
+        private final int id;
+
+        private Key(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+    }
+
+    private static final class KeyReference extends WeakReference<Key> {
+
+        final String path;
+        final int id;
+
+        KeyReference(Key key, String path, ReferenceQueue<Key> queue) {
+            super(key, queue);
+            this.path = path;
+            this.id = key.id;
+        }
+    }
+}
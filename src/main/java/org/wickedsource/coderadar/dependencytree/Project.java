@@ -0,0 +1,216 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A project directory analyzed for one base package, together with everything kept between analyses: the dependency
+ * cache of its files, the last published tree and the watcher invalidating the tree when files change. The paths the
+ * watcher reports are collected until the next tree is published, so the last published tree can be updated with
+ * TreeUpdate instead of being built again.
+ */
+public class Project implements Closeable {
+
+    private final Path rootDir;
+    private final String basepackage;
+    private final String basepackage_dot;
+    private final DependencyCache dependencyCache;
+    // incremented on every change, a tree is only published if nothing changed while it was built
+    private final AtomicLong version = new AtomicLong();
+    private volatile TreeSnapshot snapshot;
+    // last published tree, kept when it is outdated so it can be updated
+    private volatile TreeSnapshot published;
+    // paths changed since the last published tree, null if unknown changes were made
+    private Set<Path> changedPaths = new HashSet<>();
+    private volatile ProjectWatcher watcher;
+    private volatile long lastAccessMillis;
+    private AnalysisProgress buildProgress;
+
+    /**
+     * @param rootDir         project directory
+     * @param basepackage_dot base package, e.g. "org.wickedsource.coderadar"
+     * @param dependencyCache cache for the parsed dependencies of the files of this project
+     */
+    public Project(Path rootDir, String basepackage_dot, DependencyCache dependencyCache) {
+        this.rootDir = rootDir;
+        this.basepackage_dot = basepackage_dot;
+        this.basepackage = basepackage_dot.replace('.', '/');
+        this.dependencyCache = dependencyCache;
+        this.lastAccessMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * @return key identifying a project directory analyzed for a base package
+     */
+    public static String key(Path rootDir, String basepackage_dot) {
+        return rootDir + "|" + basepackage_dot;
+    }
+
+    public String getKey() {
+        return key(rootDir, basepackage_dot);
+    }
+
+    public Path getRootDir() {
+        return rootDir;
+    }
+
+    public String getBasepackage() {
+        return basepackage;
+    }
+
+    public String getBasepackage_dot() {
+        return basepackage_dot;
+    }
+
+    public DependencyCache getDependencyCache() {
+        return dependencyCache;
+    }
+
+    /**
+     * @return version to pass to publish(TreeSnapshot, long) after building a tree
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @return last published tree; null if there is none or it is outdated
+     */
+    public TreeSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return last published tree, also if it is outdated; null if there is none
+     */
+    public TreeSnapshot getPublished() {
+        return published;
+    }
+
+    /**
+     * @return copy of the paths of all files and directories which changed since the last published tree; null if
+     * they are unknown, e.g. the project is not watched or a watcher lost events
+     */
+    public synchronized Set<Path> getChangedPaths() {
+        return watcher != null && changedPaths != null ? new HashSet<>(changedPaths) : null;
+    }
+
+    /**
+     * publish a tree if no file changed since its build started
+     *
+     * @param snapshot     tree to publish
+     * @param buildVersion getVersion() before the build started
+     * @return true if the tree was published
+     */
+    public synchronized boolean publish(TreeSnapshot snapshot, long buildVersion) {
+        if (version.get() != buildVersion) {
+            return false;
+        }
+        this.snapshot = snapshot;
+        this.published = snapshot;
+        changedPaths = new HashSet<>();
+        return true;
+    }
+
+    /**
+     * publish a tree loaded from disk if no file changed since buildVersion and no tree has been published yet,
+     * e.g. by an analysis started while the tree was loaded
+     *
+     * @param snapshot     loaded tree
+     * @param buildVersion getVersion() before the tree was checked to be up to date
+     * @return true if the tree was published
+     */
+    public synchronized boolean publishIfAbsent(TreeSnapshot snapshot, long buildVersion) {
+        return this.snapshot == null && publish(snapshot, buildVersion);
+    }
+
+    /**
+     * drop the published tree because files of the project changed
+     */
+    public synchronized void invalidate() {
+        version.incrementAndGet();
+        snapshot = null;
+        changedPaths = null;
+    }
+
+    /**
+     * drop the published tree because some files of the project changed
+     *
+     * @param paths paths of the changed files and directories, null if they are unknown
+     */
+    public synchronized void invalidate(Collection<Path> paths) {
+        changed(paths);
+        snapshot = null;
+    }
+
+    /**
+     * record changed files but keep serving the published tree until a new one is published, e.g. while the changes
+     * are analyzed right away. A tree whose build started before is not published anymore.
+     *
+     * @param paths paths of the changed files and directories, null if they are unknown
+     */
+    public synchronized void changed(Collection<Path> paths) {
+        version.incrementAndGet();
+        if (paths == null) {
+            changedPaths = null;
+        } else if (changedPaths != null) {
+            changedPaths.addAll(paths);
+        }
+    }
+
+    /**
+     * @return progress of the running analysis of this project, or a new one for the next analysis if none is running
+     */
+    public synchronized AnalysisProgress nextBuildProgress() {
+        if (buildProgress == null || buildProgress.isFinished()) {
+            buildProgress = new AnalysisProgress();
+        }
+        return buildProgress;
+    }
+
+    /**
+     * @return true if a watcher invalidates the tree on changes, so a published tree is up to date
+     */
+    public boolean isWatched() {
+        return watcher != null;
+    }
+
+    public void setWatcher(ProjectWatcher watcher) {
+        this.watcher = watcher;
+    }
+
+    public long getLastAccessMillis() {
+        return lastAccessMillis;
+    }
+
+    public void touch() {
+        lastAccessMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * @return estimated heap size of the last published tree, 0 if there is none
+     */
+    public long getEstimatedBytes() {
+        TreeSnapshot current = published;
+        return current != null ? current.getEstimatedBytes() : 0;
+    }
+
+    /**
+     * stop watching the project and drop the published tree
+     */
+    @Override
+    public void close() throws IOException {
+        invalidate();
+        published = null;
+        ProjectWatcher current = watcher;
+        watcher = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Projects with their last analyzed tree, safe to use from multiple threads. Projects not requested for ttlMillis
+ * are evicted. If more than maxProjects projects are cached or their trees together take more than maxBytes, see
+ * TreeSnapshot.getEstimatedBytes(), the least recently used projects are evicted. Evicted projects are closed, which
+ * stops watching them.
+ */
+public class ProjectCache implements Closeable {
+
+    private final int maxProjects;
+    private final long maxBytes;
+    private final long ttlMillis;
+    // access order makes the first entry the least recently used one
+    private final LinkedHashMap<String, Project> projects = new LinkedHashMap<>(16, 0.75f, true);
+    private long evictions;
+
+    /**
+     * @param maxProjects maximum number of cached projects
+     * @param maxBytes    maximum estimated size of all cached trees
+     * @param ttlMillis   time after the last request after which a project is evicted; 0 or less never expires
+     */
+    public ProjectCache(int maxProjects, long maxBytes, long ttlMillis) {
+        this.maxProjects = maxProjects;
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * @return cached project, null if it is not cached
+     */
+    public Project get(String key) {
+        List<Project> evicted = new ArrayList<>();
+        Project project;
+        synchronized (this) {
+            evictExpired(evicted);
+            project = projects.get(key);
+            if (project != null) {
+                project.touch();
+            }
+        }
+        closeAll(evicted);
+        return project;
+    }
+
+    /**
+     * cache a project unless one with the same key has been cached in the meantime
+     *
+     * @return the cached project, either the given or the one cached before
+     */
+    public Project putIfAbsent(Project project) {
+        List<Project> evicted = new ArrayList<>();
+        Project cached;
+        synchronized (this) {
+            cached = projects.putIfAbsent(project.getKey(), project);
+            if (cached == null) {
+                cached = project;
+            }
+            cached.touch();
+            evictExpired(evicted);
+            evictOverLimit(cached, evicted);
+        }
+        closeAll(evicted);
+        return cached;
+    }
+
+    /**
+     * evict least recently used projects until the cache fits its limits again, e.g. after a tree was published
+     *
+     * @param keep project which is not evicted, because it is being used
+     */
+    public void evict(Project keep) {
+        List<Project> evicted = new ArrayList<>();
+        synchronized (this) {
+            evictOverLimit(keep, evicted);
+        }
+        closeAll(evicted);
+    }
+
+    public synchronized int size() {
+        return projects.size();
+    }
+
+    /**
+     * @return estimated size of all cached trees
+     */
+    public synchronized long getEstimatedBytes() {
+        long bytes = 0;
+        for (Project project : projects.values()) {
+            bytes += project.getEstimatedBytes();
+        }
+        return bytes;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    private void evictExpired(List<Project> evicted) {
+        if (ttlMillis <= 0) {
+            return;
+        }
+        long expired = System.currentTimeMillis() - ttlMillis;
+        Iterator<Project> iterator = projects.values().iterator();
+        while (iterator.hasNext()) {
+            Project project = iterator.next();
+            if (project.getLastAccessMillis() < expired) {
+                iterator.remove();
+                evicted.add(project);
+                evictions++;
+            }
+        }
+    }
+
+    private void evictOverLimit(Project keep, List<Project> evicted) {
+        long bytes = 0;
+        for (Project project : projects.values()) {
+            bytes += project.getEstimatedBytes();
+        }
+        Iterator<Project> iterator = projects.values().iterator();
+        while ((projects.size() > maxProjects || bytes > maxBytes) && iterator.hasNext()) {
+            Project project = iterator.next();
+            if (project != keep) {
+                bytes -= project.getEstimatedBytes();
+                iterator.remove();
+                evicted.add(project);
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * close evicted projects outside of the lock
+     */
+    private static void closeAll(List<Project> evicted) {
+        for (Project project : evicted) {
+            try {
+                project.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        List<Project> evicted;
+        synchronized (this) {
+            evicted = new ArrayList<>(projects.values());
+            projects.clear();
+        }
+        closeAll(evicted);
+    }
+}
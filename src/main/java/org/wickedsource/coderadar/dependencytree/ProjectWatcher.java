@@ -0,0 +1,138 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches all directories of a project for changes and calls a listener on a background thread after the changes
+ * have settled. Events are debounced: the listener is called once no new event arrived for debounceMillis, so a
+ * checkout touching hundreds of files causes a single call. The listener gets the paths of all files and directories
+ * which were created, deleted or modified, or null if they are unknown: events were lost or a directory was created,
+ * whose content may have been created before it was registered.
+ */
+public class ProjectWatcher implements Closeable {
+
+    private final Path root;
+    private final long debounceMillis;
+    private final Consumer<Set<Path>> listener;
+    private final WatchService watchService;
+    private final Thread thread;
+    private Runnable initialTask;
+    // paths changed since the listener was called, null if unknown changes were made; used by the watcher thread only
+    private Set<Path> changes = new HashSet<>();
+
+    /**
+     * @param root           project directory to watch including all subdirectories
+     * @param debounceMillis time without events after which the listener is called
+     * @param listener       called on the watcher thread with the changed paths, see ProjectWatcher
+     */
+    public ProjectWatcher(Path root, long debounceMillis, Consumer<Set<Path>> listener) throws IOException {
+        this.root = root;
+        this.debounceMillis = debounceMillis;
+        this.listener = listener;
+        this.watchService = root.getFileSystem().newWatchService();
+        registerAll(root);
+        thread = new Thread(this::watch, "project-watcher-" + root.getFileName());
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * start watching and run a task on the watcher thread first, e.g. the first analysis of the project. Changes made
+     * while the task runs call the listener after it.
+     */
+    public void start(Runnable initialTask) {
+        this.initialTask = initialTask;
+        thread.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        watchService.close();
+    }
+
+    private void watch() {
+        if (initialTask != null) {
+            run(initialTask);
+        }
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                // wait for the first change, then collect changes until none arrived for debounceMillis
+                WatchKey key = watchService.take();
+                while (key != null) {
+                    handleEvents(key);
+                    key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                }
+                Set<Path> changed = changes;
+                changes = new HashSet<>();
+                run(() -> listener.accept(changed));
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // watcher closed
+        }
+    }
+
+    private static void run(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * collect the changed paths and register newly created directories, so changes inside them are seen as well
+     */
+    private void handleEvents(WatchKey key) {
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                changes = null;
+                continue;
+            }
+            Path changed = directory.resolve((Path) event.context());
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(changed, LinkOption.NOFOLLOW_LINKS)) {
+                try {
+                    registerAll(changed);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                if (!DependencyTree.isForbidden(changed.getFileName().toString())) {
+                    changes = null;
+                }
+            }
+            if (changes != null) {
+                changes.add(changed);
+            }
+        }
+        key.reset();
+    }
+
+    /**
+     * register a directory and all its subdirectories except the ones createTree skips, see DependencyTree.isForbidden
+     */
+    private void registerAll(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(root) && DependencyTree.isForbidden(dir.getFileName().toString())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,247 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Number of dependencies between all pairs of siblings, computed once per parent. countDependencies(i, j) equals
+ * siblings.get(i).countDependencies(siblings.get(j)), but the matrix is filled with one pass over the
+ * dependencies of every sibling instead of one pass per pair.
+ * The matrix is sparse: every row only stores the siblings it has dependencies on, sorted by index, so memory and
+ * iterating over all dependencies are O(siblings + dependencies between them).
+ * The siblings are read through a TreeView, so the matrix works for every representation of a tree.
+ *
+ * @param <N> handle of a node, see TreeView
+ */
+public class SiblingDependencyMatrix<N> {
+
+    private final TreeView<N> view;
+    private final List<N> siblings;
+    private final int[][] targets;
+    private final int[][] counts;
+    private final int[] dependencyCounts;
+    private final boolean[] packages;
+
+    /**
+     * @param view     tree the siblings belong to
+     * @param siblings children of one node
+     */
+    public SiblingDependencyMatrix(TreeView<N> view, List<N> siblings) {
+        this.view = view;
+        this.siblings = new ArrayList<>(siblings);
+        int size = this.siblings.size();
+        targets = new int[size][];
+        counts = new int[size][];
+        dependencyCounts = new int[size];
+        packages = new boolean[size];
+
+        // siblings are matched by their id, package siblings also by their package id
+        IntTable siblingIndex = new IntTable(size);
+        IntTable packageIndex = new IntTable(0);
+        for (int j = 0; j < size; j++) {
+            N sibling = this.siblings.get(j);
+            packages[j] = view.hasChildren(sibling);
+            siblingIndex.put(view.getId(sibling), j);
+            if (packages[j] && view.getPackageId(sibling) >= 0) {
+                packageIndex.put(view.getPackageId(sibling), j);
+            }
+        }
+
+        // the files of one package lie in the same package siblings, so the siblings containing a package are
+        // looked up once per distinct package: ancestorMatches holds a count followed by the sibling indices
+        IntTable ancestorOffsets = new IntTable(0);
+        int[] ancestorMatches = new int[16];
+        int ancestorMatchesSize = 0;
+        int[] row = new int[size];
+        int[] touched = new int[size];
+        for (int i = 0; i < size; i++) {
+            int touchedCount = 0;
+            List<N> dependencies = view.getDependencies(this.siblings.get(i));
+            int dependencyCount = dependencies.size();
+            dependencyCounts[i] = dependencyCount;
+            for (int d = 0; d < dependencyCount; d++) {
+                N dependency = dependencies.get(d);
+                // the dependency itself: a sibling, or a package with the package id of a package sibling
+                int self = siblingIndex.get(view.getId(dependency));
+                int packageId = view.getPackageId(dependency);
+                int match = packageId >= 0 ? packageIndex.get(packageId) : -1;
+                if (match < 0) {
+                    match = self;
+                }
+                if (match >= 0 && match != i && row[match]++ == 0) {
+                    touched[touchedCount++] = match;
+                }
+                N ancestor = view.getParent(dependency);
+                if (ancestor == null) {
+                    continue;
+                }
+                int offset = ancestorOffsets.get(view.getId(ancestor));
+                if (offset < 0) {
+                    if (ancestorMatchesSize + size + 1 > ancestorMatches.length) {
+                        ancestorMatches = Arrays.copyOf(ancestorMatches,
+                                Math.max(ancestorMatches.length * 2, ancestorMatchesSize + size + 1));
+                    }
+                    offset = ancestorMatchesSize;
+                    ancestorMatchesSize += 1 + findContainingSiblings(ancestor, siblingIndex, packageIndex,
+                            ancestorMatches, offset);
+                    ancestorOffsets.put(view.getId(ancestor), offset);
+                }
+                for (int k = offset + 1, last = offset + ancestorMatches[offset]; k <= last; k++) {
+                    int j = ancestorMatches[k];
+                    if (j != i && j != match && row[j]++ == 0) {
+                        touched[touchedCount++] = j;
+                    }
+                }
+            }
+            Arrays.sort(touched, 0, touchedCount);
+            targets[i] = Arrays.copyOf(touched, touchedCount);
+            counts[i] = new int[touchedCount];
+            for (int k = 0; k < touchedCount; k++) {
+                counts[i][k] = row[touched[k]];
+                row[touched[k]] = 0;
+            }
+        }
+    }
+
+    /**
+     * find the package siblings the dependencies below a node count for, see Node.countDependencies(Node node):
+     * package siblings which are the node or one of its ancestors or have the package id of one of them
+     *
+     * @param matches filled with the number of siblings found at offset, followed by their indices
+     * @return number of siblings found
+     */
+    private int findContainingSiblings(N node, IntTable siblingIndex, IntTable packageIndex, int[] matches,
+                                       int offset) {
+        int count = 0;
+        for (N ancestor = node; ancestor != null; ancestor = view.getParent(ancestor)) {
+            int packageId = view.getPackageId(ancestor);
+            int j = packageId >= 0 ? packageIndex.get(packageId) : -1;
+            if (j < 0 && view.hasChildren(ancestor)) {
+                j = siblingIndex.get(view.getId(ancestor));
+            }
+            if (j >= 0 && !contains(matches, offset + 1, offset + 1 + count, j)) {
+                matches[offset + 1 + count++] = j;
+            }
+        }
+        matches[offset] = count;
+        return count;
+    }
+
+    private static boolean contains(int[] values, int from, int to, int value) {
+        for (int k = from; k < to; k++) {
+            if (values[k] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return siblings.size();
+    }
+
+    public N getSibling(int index) {
+        return siblings.get(index);
+    }
+
+    /**
+     * @return true if sibling index has children
+     */
+    public boolean isPackage(int index) {
+        return packages[index];
+    }
+
+    /**
+     * @return number of all dependencies of sibling index, also of those which are not on a sibling
+     */
+    public int getDependencyCount(int index) {
+        return dependencyCounts[index];
+    }
+
+    /**
+     * @return number of dependencies sibling from has on sibling to; 0 if from and to are the same sibling
+     */
+    public int countDependencies(int from, int to) {
+        int position = Arrays.binarySearch(targets[from], to);
+        return position >= 0 ? counts[from][position] : 0;
+    }
+
+    /**
+     * @return true if sibling from has at least one dependency on sibling to
+     */
+    public boolean hasDependency(int from, int to) {
+        return Arrays.binarySearch(targets[from], to) >= 0;
+    }
+
+    /**
+     * @return indices of all other siblings sibling from has dependencies on in ascending order; must not be modified
+     */
+    public int[] getDependencyTargets(int from) {
+        return targets[from];
+    }
+
+    /**
+     * open addressing hash table from int keys to non-negative int values, like the id set of NodeSet. The key and
+     * the value + 1 of every slot are stored next to each other, a value of 0 marks an empty slot, so a new table
+     * does not have to be filled.
+     */
+    private static final class IntTable {
+
+        private int[] slots;
+        private int size;
+
+        /**
+         * @param expectedSize number of keys the table holds without growing
+         */
+        IntTable(int expectedSize) {
+            slots = new int[2 * (Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1)];
+        }
+
+        /**
+         * @return value of the key, -1 if the key is not contained
+         */
+        int get(int key) {
+            return slots[slot(key) + 1] - 1;
+        }
+
+        void put(int key, int value) {
+            int slot = slot(key);
+            if (slots[slot + 1] == 0) {
+                // keep the table at most half full
+                if ((size + 1) * 4 > slots.length) {
+                    rehash(slots.length * 2);
+                    slot = slot(key);
+                }
+                slots[slot] = key;
+                size++;
+            }
+            slots[slot + 1] = value + 1;
+        }
+
+        /**
+         * @return index of the key of the slot containing the key or of the empty slot it would be inserted in
+         */
+        private int slot(int key) {
+            int mask = slots.length / 2 - 1;
+            int h = key * 0x9E3779B9;
+            int slot = (h ^ (h >>> 16)) & mask;
+            while (slots[2 * slot + 1] != 0 && slots[2 * slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return 2 * slot;
+        }
+
+        private void rehash(int length) {
+            int[] old = slots;
+            slots = new int[length];
+            for (int k = 0; k < old.length; k += 2) {
+                if (old[k + 1] != 0) {
+                    int slot = slot(old[k]);
+                    slots[slot] = old[k];
+                    slots[slot + 1] = old[k + 1];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Display layers of siblings computed on their dependency graph in O(siblings + dependencies between them).
+ * A sibling which has a dependency on another sibling is placed in a lower layer than that sibling. Siblings which
+ * depend on each other directly or indirectly form a cycle (a strongly connected component) and share one layer.
+ * Layers are the length of the longest dependency path leading to a sibling, so siblings nothing depends on are
+ * in layer 0.
+ */
+public class SiblingLayering {
+
+    private final int[] component;
+    private final int[] layers;
+    private final List<int[]> cycles;
+
+    public SiblingLayering(SiblingDependencyMatrix<?> matrix) {
+        int size = matrix.size();
+        component = new int[size];
+        int[][] targets = new int[size][];
+        for (int i = 0; i < size; i++) {
+            targets[i] = matrix.getDependencyTargets(i);
+        }
+        int componentCount = findComponents(targets, component);
+
+        // Tarjan emits a component after all components it depends on, so descending component ids are a
+        // topological order of the condensed graph
+        int[] componentLayers = new int[componentCount];
+        int[][] members = groupMembers(componentCount);
+        for (int c = componentCount - 1; c >= 0; c--) {
+            for (int from : members[c]) {
+                for (int to : matrix.getDependencyTargets(from)) {
+                    int target = component[to];
+                    if (target != c && componentLayers[target] < componentLayers[c] + 1) {
+                        componentLayers[target] = componentLayers[c] + 1;
+                    }
+                }
+            }
+        }
+        layers = new int[size];
+        for (int i = 0; i < size; i++) {
+            layers[i] = componentLayers[component[i]];
+        }
+
+        cycles = new ArrayList<>();
+        for (int[] cycle : members) {
+            if (cycle.length > 1) {
+                cycles.add(cycle);
+            }
+        }
+        cycles.sort((c1, c2) -> Integer.compare(c1[0], c2[0]));
+    }
+
+    /**
+     * iterative version of Tarjan's algorithm, siblings and their edges are visited in index order so the result only
+     * depends on the order of the siblings. A component is numbered after all components it has edges to.
+     *
+     * @param targets   siblings every sibling has an edge to
+     * @param component filled with the component of every sibling
+     * @return number of strongly connected components found
+     */
+    static int findComponents(int[][] targets, int[] component) {
+        int size = targets.length;
+        int[] index = new int[size];
+        int[] lowlink = new int[size];
+        boolean[] onStack = new boolean[size];
+        int[] stack = new int[size];
+        int[] callStack = new int[size];
+        int[] nextTarget = new int[size];
+        Arrays.fill(index, -1);
+        int stackSize = 0;
+        int nextIndex = 0;
+        int componentCount = 0;
+
+        for (int start = 0; start < size; start++) {
+            if (index[start] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            callStack[depth++] = start;
+            index[start] = lowlink[start] = nextIndex++;
+            stack[stackSize++] = start;
+            onStack[start] = true;
+            while (depth > 0) {
+                int v = callStack[depth - 1];
+                if (nextTarget[v] < targets[v].length) {
+                    int w = targets[v][nextTarget[v]++];
+                    if (index[w] < 0) {
+                        index[w] = lowlink[w] = nextIndex++;
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        callStack[depth++] = w;
+                    } else if (onStack[w]) {
+                        lowlink[v] = Math.min(lowlink[v], index[w]);
+                    }
+                    continue;
+                }
+                depth--;
+                if (depth > 0) {
+                    int parent = callStack[depth - 1];
+                    lowlink[parent] = Math.min(lowlink[parent], lowlink[v]);
+                }
+                if (lowlink[v] == index[v]) {
+                    int w;
+                    do {
+                        w = stack[--stackSize];
+                        onStack[w] = false;
+                        component[w] = componentCount;
+                    } while (w != v);
+                    componentCount++;
+                }
+            }
+        }
+        return componentCount;
+    }
+
+    /**
+     * @return sibling indices of every component in ascending order
+     */
+    private int[][] groupMembers(int componentCount) {
+        int[] sizes = new int[componentCount];
+        for (int c : component) {
+            sizes[c]++;
+        }
+        int[][] members = new int[componentCount][];
+        for (int c = 0; c < componentCount; c++) {
+            members[c] = new int[sizes[c]];
+            sizes[c] = 0;
+        }
+        for (int i = 0; i < component.length; i++) {
+            members[component[i]][sizes[component[i]]++] = i;
+        }
+        return members;
+    }
+
+    /**
+     * @return display layer of sibling i
+     */
+    public int getLayer(int i) {
+        return layers[i];
+    }
+
+    /**
+     * @return sibling indices of every cycle with more than one sibling, each cycle and the list of cycles in
+     * ascending order of sibling indices
+     */
+    public List<int[]> getCycles() {
+        return cycles;
+    }
+}
@@ -0,0 +1,465 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongPredicate;
+import java.util.zip.CRC32;
+
+/**
+ * Single pass lexer for java source files. Comments, string and character literals are skipped while scanning,
+ * so only real code is looked at. One scan emits:
+ *   imports from the import area of the file
+ *   wildcard imports (ending with '*') from the import area of the file
+ *   the class of static imports from the import area of the file, without the imported member or '*'
+ *   fully qualified class name usages in the rest of the file
+ * Only names inside the base package are emitted. With AnalysisDepth.IMPORTS_ONLY scanning stops at the end of the
+ * import area and only the beginning of a file is read. With AnalysisDepth.FULL the rest of the file is only lexed up
+ * to the last occurrence of the base package, found by a literal search, so files without qualified usages stop at the
+ * end of their import area as well.
+ * The lexer works on the bytes of a file: small files are read into a buffer reused by the scanning thread, large
+ * files are memory-mapped. Keywords and the base package are compared byte by byte, so the only Strings created are
+ * the emitted names. The bytes are expected in an ASCII compatible charset like UTF-8 or ISO-8859-1; files in other
+ * charsets are converted to UTF-8 before scanning.
+ */
+public class SourceScanner {
+
+    /**
+     * files of at least this size are memory-mapped instead of read into a buffer
+     */
+    private static final int MAPPING_THRESHOLD = 256 * 1024;
+
+    /**
+     * number of bytes read first with AnalysisDepth.IMPORTS_ONLY, the rest of a file is only read if its import area
+     * does not end within them
+     */
+    private static final int HEAD_SIZE = 8 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(16 * 1024));
+
+    private static final byte[] PACKAGE = bytes("package");
+    private static final byte[] IMPORT = bytes("import");
+    private static final byte[] STATIC = bytes("static");
+    private static final byte[] NEW = bytes("new");
+
+    private final byte[] basepackagePrefix;
+    private final Charset charset;
+    private final boolean asciiCompatible;
+    private final AnalysisDepth depth;
+    private final LongAdder bytesRead = new LongAdder();
+
+    public SourceScanner(String basepackage_dot) {
+        this(basepackage_dot, StandardCharsets.UTF_8, AnalysisDepth.FULL);
+    }
+
+    /**
+     * @param charset charset of the scanned files
+     * @param depth   if fully qualified class name usages are scanned for or only imports
+     */
+    public SourceScanner(String basepackage_dot, Charset charset, AnalysisDepth depth) {
+        this.basepackagePrefix = bytes(basepackage_dot + ".");
+        this.charset = charset;
+        this.depth = depth;
+        String ascii = "\t\n\r !\"#$%&'()*+,-./0123456789:;<=>?@ABCDEFGHIJKLMNOPQRSTUVWXYZ[\\]^_`abcdefghijklmnopqrstuvwxyz{|}~";
+        this.asciiCompatible = Arrays.equals(ascii.getBytes(charset), bytes(ascii));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return number of bytes scanned by this scanner, from files or given as content
+     */
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * read the given file once and scan it for dependencies
+     *
+     * @param file java source file to scan
+     * @return List of package and file names in order of appearance, without duplicates
+     */
+    public List<String> scan(Path file) throws IOException {
+        return scan(file, null, null);
+    }
+
+    /**
+     * read the given file once like scan(Path file) and scan it unless the bytes read did not change, e.g. for
+     * DependencyCache. The bytes are hashed in the buffer they are scanned from, so no copy of the file is made.
+     *
+     * @param file      java source file to scan
+     * @param crc       if not null, updated with the bytes read, which are all bytes the dependencies are found in
+     * @param unchanged if not null, asked with the CRC32 of the bytes read before they are scanned; if it returns true
+     *                  the file is not scanned
+     * @return List of package and file names in order of appearance, without duplicates; null if the file is unchanged
+     */
+    public List<String> scan(Path file, CRC32 crc, LongPredicate unchanged) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            boolean mapped = size >= MAPPING_THRESHOLD;
+            // most import areas end within the head of the file, the rest is only read if they do not
+            boolean headFirst = depth == AnalysisDepth.IMPORTS_ONLY && size > HEAD_SIZE && asciiCompatible;
+            ByteBuffer buffer;
+            if (mapped) {
+                // pages of a mapped file are only read when they are accessed
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                if (headFirst) {
+                    buffer.limit(HEAD_SIZE);
+                }
+            } else {
+                buffer = BUFFERS.get();
+                if (buffer.capacity() < size) {
+                    buffer = ByteBuffer.allocate(Integer.highestOneBit((int) size) << 1);
+                    BUFFERS.set(buffer);
+                }
+                buffer.clear();
+                if (headFirst) {
+                    buffer.limit(HEAD_SIZE);
+                }
+                read(channel, buffer);
+                buffer.flip();
+            }
+            if (headFirst) {
+                Set<String> dependencies = new LinkedHashSet<>();
+                if (scan(buffer, dependencies, true)) {
+                    if (isUnchanged(buffer, crc, unchanged)) {
+                        return null;
+                    }
+                    bytesRead.add(buffer.limit());
+                    return new ArrayList<>(dependencies);
+                }
+                if (mapped) {
+                    buffer.limit(buffer.capacity());
+                } else {
+                    buffer.position(buffer.limit());
+                    buffer.limit(buffer.capacity());
+                    read(channel, buffer);
+                    buffer.flip();
+                }
+            }
+            return scanIfChanged(buffer, crc, unchanged);
+        }
+    }
+
+    private List<String> scanIfChanged(ByteBuffer content, CRC32 crc, LongPredicate unchanged) {
+        return isUnchanged(content, crc, unchanged) ? null : scan(content);
+    }
+
+    /**
+     * @return true if unchanged accepts the CRC32 of the content
+     */
+    private static boolean isUnchanged(ByteBuffer content, CRC32 crc, LongPredicate unchanged) {
+        if (crc == null) {
+            return false;
+        }
+        crc.update(content.duplicate());
+        return unchanged != null && unchanged.test(crc.getValue());
+    }
+
+    /**
+     * read until the end of the file or the buffer is full, the size of a file may change while reading
+     */
+    private static void read(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        }
+    }
+
+    /**
+     * scan the given file content for dependencies. The content is read from its position to its limit, the position
+     * of the buffer is not changed.
+     *
+     * @param content bytes of java source code in the charset of this scanner
+     * @return List of package and file names in order of appearance, without duplicates
+     */
+    public List<String> scan(ByteBuffer content) {
+        bytesRead.add(content.remaining());
+        if (!asciiCompatible) {
+            content = StandardCharsets.UTF_8.encode(charset.decode(content.duplicate()));
+        }
+        Set<String> dependencies = new LinkedHashSet<>();
+        scan(content, dependencies, false);
+        return new ArrayList<>(dependencies);
+    }
+
+    /**
+     * @param partial if content is only the beginning of a file
+     * @return false if content is partial and the scan reached its end before the import area ended, so the
+     * dependencies found are incomplete
+     */
+    private boolean scan(ByteBuffer content, Set<String> dependencies, boolean partial) {
+        Charset nameCharset = asciiCompatible ? charset : StandardCharsets.UTF_8;
+        // the import area ends with the first token that is not part of a package or import declaration
+        boolean inImportArea = true;
+        int length = content.limit();
+        // lexing stops at scanEnd, names starting before it are still read completely
+        int scanEnd = length;
+        // if the last token was the keyword new or an '@', so the next name is a class and not a method call
+        boolean classExpected = false;
+        int i = content.position();
+        while (i < scanEnd) {
+            byte c = content.get(i);
+            if (c == '/' && i + 1 < length && content.get(i + 1) == '/') {
+                i = skipLineComment(content, i + 2);
+            } else if (c == '/' && i + 1 < length && content.get(i + 1) == '*') {
+                i = skipBlockComment(content, i + 2);
+            } else if (c == '"') {
+                i = skipStringLiteral(content, i);
+            } else if (c == '\'') {
+                i = skipCharLiteral(content, i + 1);
+            } else if (isIdentifierStart(c)) {
+                int end = readQualifiedName(content, i, false);
+                boolean isImport = isWord(content, i, end, IMPORT);
+                if (isImport || isWord(content, i, end, PACKAGE)) {
+                    int start = skipWhitespace(content, end);
+                    end = readQualifiedName(content, start, isImport);
+                    if (isWord(content, start, end, STATIC)) {
+                        start = skipWhitespace(content, end);
+                        end = readQualifiedName(content, start, true);
+                        if (inImportArea && startsWithBasepackage(content, start, end)) {
+                            // a static import depends on the class of the imported member
+                            String name = nameOf(content, start, end, nameCharset);
+                            name = name.substring(0, name.lastIndexOf('.'));
+                            if (name.length() >= basepackagePrefix.length) {
+                                dependencies.add(name);
+                            }
+                        }
+                    } else if (isImport && inImportArea && startsWithBasepackage(content, start, end)) {
+                        dependencies.add(nameOf(content, start, end, nameCharset));
+                    }
+                    classExpected = false;
+                } else {
+                    if (inImportArea) {
+                        inImportArea = false;
+                        // a name touching the end of a partial content may continue after it
+                        if (partial && end >= length) {
+                            return false;
+                        }
+                        scanEnd = endOfImportArea(content, end, length);
+                        if (scanEnd < 0) {
+                            return true;
+                        }
+                    }
+                    if (startsWithBasepackage(content, i, end)) {
+                        String name = nameOf(content, i, end, nameCharset);
+                        // drop the method name of a call like org.foo.Bar.method(), but keep the class of a
+                        // constructor call like new org.foo.Bar() or an annotation like @org.foo.Bar(value); names
+                        // of members and nested classes left over are resolved to the file of their class by
+                        // NodeIndex.resolve(String name)
+                        int next = skipWhitespace(content, end);
+                        if (!classExpected && next < length && content.get(next) == '(') {
+                            name = name.substring(0, name.lastIndexOf('.'));
+                        }
+                        if (name.length() >= basepackagePrefix.length) {
+                            dependencies.add(name);
+                        }
+                    }
+                    classExpected = isWord(content, i, end, NEW);
+                }
+                i = end;
+            } else if (c >= '0' && c <= '9') {
+                // skip number literals like 1.5e10f so they are not read as names
+                classExpected = false;
+                i++;
+                while (i < length && (isIdentifierPart(content.get(i)) || content.get(i) == '.')) {
+                    i++;
+                }
+            } else {
+                if (!isWhitespace(c)) {
+                    classExpected = c == '@';
+                }
+                if (inImportArea && !isWhitespace(c) && c != ';') {
+                    inImportArea = false;
+                    // the last character of a partial content may be the start of a comment
+                    if (partial && i + 1 >= length) {
+                        return false;
+                    }
+                    scanEnd = endOfImportArea(content, i + 1, length);
+                    if (scanEnd < 0) {
+                        return true;
+                    }
+                }
+                i++;
+            }
+        }
+        return !partial || !inImportArea;
+    }
+
+    /**
+     * decide how much of a file is scanned after its import area
+     *
+     * @param from   index after the token which ended the import area
+     * @param length end of the content
+     * @return end of the scan: -1 to stop, or the end of the last occurrence of the base package
+     */
+    private int endOfImportArea(ByteBuffer content, int from, int length) {
+        if (depth == AnalysisDepth.IMPORTS_ONLY) {
+            return -1;
+        }
+        int last = lastIndexOfBasepackage(content, from, length);
+        return last < 0 ? -1 : last + basepackagePrefix.length;
+    }
+
+    /**
+     * @return index of the last occurrence of the base package followed by a dot between from and to, -1 if there is
+     * none
+     */
+    private int lastIndexOfBasepackage(ByteBuffer content, int from, int to) {
+        byte first = basepackagePrefix[0];
+        for (int i = to - basepackagePrefix.length; i >= from; i--) {
+            if (content.get(i) == first && isWord(content, i, i + basepackagePrefix.length, basepackagePrefix)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * bytes of non ASCII characters are treated as identifier characters
+     */
+    private static boolean isIdentifierStart(byte c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_' || c == '$' || c < 0;
+    }
+
+    private static boolean isIdentifierPart(byte c) {
+        return isIdentifierStart(c) || c >= '0' && c <= '9';
+    }
+
+    private static boolean isWhitespace(byte c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0x0B;
+    }
+
+    /**
+     * read a name like a.b.C starting at a java identifier. whitespace around the dots is allowed.
+     *
+     * @param allowWildcard if a trailing '*' is part of the name, as in wildcard imports
+     * @return index after the last character of the name
+     */
+    private int readQualifiedName(ByteBuffer content, int start, boolean allowWildcard) {
+        int length = content.limit();
+        int i = start;
+        int end = start;
+        while (i < length && isIdentifierStart(content.get(i))) {
+            i++;
+            while (i < length && isIdentifierPart(content.get(i))) {
+                i++;
+            }
+            end = i;
+            int dot = skipWhitespace(content, i);
+            if (dot >= length || content.get(dot) != '.') {
+                break;
+            }
+            i = skipWhitespace(content, dot + 1);
+            if (allowWildcard && i < length && content.get(i) == '*') {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * @return true if the bytes from start to end are the given word
+     */
+    private boolean isWord(ByteBuffer content, int start, int end, byte[] word) {
+        if (end - start != word.length) {
+            return false;
+        }
+        for (int i = 0; i < word.length; i++) {
+            if (content.get(start + i) != word[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if a name read by readQualifiedName starts with the base package followed by a dot, ignoring the
+     * whitespace around its dots
+     */
+    private boolean startsWithBasepackage(ByteBuffer content, int start, int end) {
+        int matched = 0;
+        for (int i = start; i < end && matched < basepackagePrefix.length; i++) {
+            byte c = content.get(i);
+            if (!isWhitespace(c)) {
+                if (c != basepackagePrefix[matched]) {
+                    return false;
+                }
+                matched++;
+            }
+        }
+        return matched == basepackagePrefix.length;
+    }
+
+    /**
+     * decode a name read by readQualifiedName without the whitespace around its dots
+     */
+    private String nameOf(ByteBuffer content, int start, int end, Charset nameCharset) {
+        byte[] name = new byte[end - start];
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            byte c = content.get(i);
+            if (!isWhitespace(c)) {
+                name[length++] = c;
+            }
+        }
+        return new String(name, 0, length, nameCharset);
+    }
+
+    private int skipWhitespace(ByteBuffer content, int i) {
+        while (i < content.limit() && isWhitespace(content.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private int skipLineComment(ByteBuffer content, int i) {
+        while (i < content.limit() && content.get(i) != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+    private int skipBlockComment(ByteBuffer content, int i) {
+        while (i + 1 < content.limit() && !(content.get(i) == '*' && content.get(i + 1) == '/')) {
+            i++;
+        }
+        return i + 2;
+    }
+
+    /**
+     * skip a string literal or a text block starting at the given quote
+     */
+    private int skipStringLiteral(ByteBuffer content, int i) {
+        int length = content.limit();
+        if (i + 2 < length && content.get(i + 1) == '"' && content.get(i + 2) == '"') {
+            i += 3;
+            while (i + 2 < length && !(content.get(i) == '"' && content.get(i + 1) == '"' && content.get(i + 2) == '"')) {
+                i += content.get(i) == '\\' ? 2 : 1;
+            }
+            return i + 3;
+        }
+        i++;
+        while (i < length && content.get(i) != '"' && content.get(i) != '\n') {
+            i += content.get(i) == '\\' ? 2 : 1;
+        }
+        return i + 1;
+    }
+
+    private int skipCharLiteral(ByteBuffer content, int i) {
+        while (i < content.limit() && content.get(i) != '\'' && content.get(i) != '\n') {
+            i += content.get(i) == '\\' ? 2 : 1;
+        }
+        return i + 1;
+    }
+}
@@ -0,0 +1,158 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Analyzed tree of a project as it was published. The tree is frozen, see Node.freeze(), so readers can share it
+ * without copying. The NodeIndex of the tree is kept to look up packages without walking the tree. The heap size of
+ * the tree is estimated once when the snapshot is created, so caches can account the memory of every tree they keep.
+ * A TreeUpdate derives the snapshot of an updated tree from the previous one, sharing all nodes it did not change.
+ */
+public class TreeSnapshot {
+
+    // object header and fields of a Node
+    private static final int NODE_BYTES = 64;
+    // header and fields of a String plus its char array header, the chars are counted separately
+    private static final int STRING_BYTES = 56;
+    // list object, its array and the NodeSet id table per element
+    private static final int LIST_BYTES = 40;
+    private static final int REFERENCE_BYTES = 8;
+    // entries of the NodeIndex maps per node
+    private static final int INDEX_BYTES = 96;
+
+    private final Node root;
+    private final NodeIndex index;
+    private final long createdMillis;
+    private final long buildMillis;
+    private final long estimatedBytes;
+    private final Map<String, Long> modificationTimes;
+
+    /**
+     * @param root        frozen root Node of the tree
+     * @param index       index of the tree
+     * @param buildMillis time it took to build the tree
+     */
+    public TreeSnapshot(Node root, NodeIndex index, long buildMillis) {
+        this(root, index, buildMillis, null);
+    }
+
+    /**
+     * @param root              frozen root Node of the tree
+     * @param index             index of the tree
+     * @param buildMillis       time it took to build the tree
+     * @param modificationTimes modification times of the project the tree was built from, see
+     *                          DependencyTree.getModificationTimes(); null if they are not kept
+     */
+    public TreeSnapshot(Node root, NodeIndex index, long buildMillis, Map<String, Long> modificationTimes) {
+        this(root, index, buildMillis, root != null ? estimateBytes(root) : 0, modificationTimes);
+    }
+
+    /**
+     * @param estimatedBytes estimated heap size of the tree, e.g. derived from the previous tree by TreeUpdate
+     */
+    TreeSnapshot(Node root, NodeIndex index, long buildMillis, long estimatedBytes, Map<String, Long> modificationTimes) {
+        this.root = root;
+        this.index = index;
+        this.createdMillis = System.currentTimeMillis();
+        this.buildMillis = buildMillis;
+        this.estimatedBytes = estimatedBytes;
+        this.modificationTimes = modificationTimes;
+    }
+
+    public Node getRoot() {
+        return root;
+    }
+
+    public NodeIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @return modification times of the directories and source files the tree was built from by path, null if they
+     * are not kept
+     */
+    public Map<String, Long> getModificationTimes() {
+        return modificationTimes;
+    }
+
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    public long getBuildMillis() {
+        return buildMillis;
+    }
+
+    /**
+     * look up a package in the index
+     *
+     * @param packageName qualified package name relative to the base package, empty for the root
+     * @return the package Node; if modules share the package a new Node containing the package Node of every module;
+     * null if there is no such package
+     */
+    public Node getPackage(String packageName) {
+        if (packageName.isEmpty()) {
+            return root;
+        }
+        List<Node> packages = index.getPackages(packageName);
+        if (packages.isEmpty()) {
+            return null;
+        }
+        if (packages.size() == 1) {
+            return packages.get(0);
+        }
+        Node first = packages.get(0);
+        // the dependencies of the merged Node are derived from the package of every module
+        Node merged = new Node(new ArrayList<>(packages), first.getPath(), first.getFilename(), first.getPackageName());
+        merged.setLayer(0);
+        return merged;
+    }
+
+    /**
+     * @return estimated heap size of the tree in bytes
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * estimate the heap size of a subtree: the nodes, their index entries, their strings and their lists of children,
+     * dependencies and cycles. Nodes referenced as dependencies are part of the tree and only counted once. Packages
+     * only store dependencies if they do not derive them from their files, derived dependencies are cached in a
+     * bounded PackageDependencyCache and not counted.
+     */
+    private static long estimateBytes(Node node) {
+        long bytes = estimateNodeBytes(node);
+        for (Node child : node.getChildren()) {
+            bytes += estimateBytes(child);
+        }
+        return bytes;
+    }
+
+    /**
+     * estimate the heap size of a Node like estimateBytes(Node node) does, without its descendants
+     */
+    static long estimateNodeBytes(Node node) {
+        List<Node> dependencies = node.aggregatesDependencies() ? Collections.emptyList() : node.getDependencies();
+        long bytes = NODE_BYTES + INDEX_BYTES
+                + stringBytes(node.getPath()) + stringBytes(node.getFilename()) + stringBytes(node.getPackageName())
+                + listBytes(node.getChildren()) + listBytes(dependencies)
+                // the id table of a NodeSet has at least twice as many slots as elements
+                + dependencies.size() * 2L * Integer.BYTES;
+        for (List<Node> cycle : node.getCycles()) {
+            bytes += listBytes(cycle);
+        }
+        return bytes;
+    }
+
+    private static long stringBytes(String string) {
+        return string == null ? 0 : STRING_BYTES + 2L * string.length();
+    }
+
+    private static long listBytes(List<?> list) {
+        return list == null ? 0 : LIST_BYTES + (long) list.size() * REFERENCE_BYTES;
+    }
+}
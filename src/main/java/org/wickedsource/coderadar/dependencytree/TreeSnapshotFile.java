@@ -0,0 +1,294 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Binary file of an analyzed tree, so a project does not have to be analyzed again after a restart. The file holds
+ *   a header with the project directory, base package, analysis depth and charset the tree was analyzed with
+ *   a table of all distinct strings, nodes refer to their path, filename and package name by index
+ *   the nodes in pre-order as columns of ints: strings, layer, and children, dependencies and cycles as offsets into
+ *   int arrays of node indices. Packages which derive their dependencies from their files have none stored, the
+ *   packages which keep their own dependencies, like the root, are listed.
+ *   the modification times of the directories and files of the project, see DependencyTree.getModificationTimes()
+ * Children, dependencies and cycles keep their order, so a loaded tree is written exactly like the analyzed one.
+ * A loaded tree is only used if the modification time of every directory and file is unchanged.
+ */
+public class TreeSnapshotFile {
+
+    private static final int MAGIC = 0x44545346;
+    // 3: trees of older versions miss the dependencies of static imports and qualified constructor calls
+    // 4: trees of older versions miss the dependencies of qualified annotations with arguments
+    private static final int FORMAT_VERSION = 4;
+
+    private TreeSnapshotFile() {
+    }
+
+    /**
+     * save a tree to a file
+     *
+     * @param file              file to write to, replaced in one step
+     * @param snapshot          tree to save
+     * @param project           project the tree was analyzed for
+     * @param depth             analysis depth the tree was analyzed with
+     * @param charset           charset the tree was analyzed with
+     * @param modificationTimes modification times of the project, see DependencyTree.getModificationTimes()
+     */
+    public static void save(Path file, TreeSnapshot snapshot, Project project, AnalysisDepth depth, String charset,
+                            Map<String, Long> modificationTimes) throws IOException {
+        List<Node> nodes = new ArrayList<>();
+        collectNodes(snapshot.getRoot(), nodes);
+        Map<Node, Integer> nodeIndices = new HashMap<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            nodeIndices.put(nodes.get(i), i);
+        }
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        IntArray childOffsets = new IntArray();
+        IntArray children = new IntArray();
+        IntArray dependencyOffsets = new IntArray();
+        IntArray dependencies = new IntArray();
+        IntArray cycleOffsets = new IntArray();
+        IntArray memberOffsets = new IntArray();
+        IntArray members = new IntArray();
+        IntArray fixedPackages = new IntArray();
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            childOffsets.add(children.size());
+            for (Node child : node.getChildren()) {
+                children.add(nodeIndices.get(child));
+            }
+            dependencyOffsets.add(dependencies.size());
+            if (!node.aggregatesDependencies()) {
+                for (Node dependency : node.getDependencies()) {
+                    dependencies.add(nodeIndices.get(dependency));
+                }
+                if (node.hasChildren()) {
+                    fixedPackages.add(i);
+                }
+            }
+            cycleOffsets.add(memberOffsets.size());
+            for (List<Node> cycle : node.getCycles()) {
+                memberOffsets.add(members.size());
+                for (Node member : cycle) {
+                    members.add(nodeIndices.get(member));
+                }
+            }
+        }
+        childOffsets.add(children.size());
+        dependencyOffsets.add(dependencies.size());
+        cycleOffsets.add(memberOffsets.size());
+        memberOffsets.add(members.size());
+
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, project.getRootDir().toString());
+            writeString(out, project.getBasepackage_dot());
+            writeString(out, depth.name());
+            writeString(out, charset);
+            out.writeLong(snapshot.getBuildMillis());
+            IntArray nodeStrings = new IntArray();
+            for (Node node : nodes) {
+                nodeStrings.add(stringIndex(strings, node.getPath()));
+                nodeStrings.add(stringIndex(strings, node.getFilename()));
+                nodeStrings.add(stringIndex(strings, node.getPackageName()));
+            }
+            IntArray timePaths = new IntArray();
+            List<Long> times = new ArrayList<>(modificationTimes.size());
+            for (Map.Entry<String, Long> entry : modificationTimes.entrySet()) {
+                timePaths.add(stringIndex(strings, entry.getKey()));
+                times.add(entry.getValue());
+            }
+            out.writeInt(strings.size());
+            for (String string : strings.keySet()) {
+                writeString(out, string);
+            }
+            out.writeInt(nodes.size());
+            nodeStrings.writeTo(out);
+            for (Node node : nodes) {
+                out.writeInt(node.getLayer());
+            }
+            childOffsets.writeTo(out);
+            children.writeTo(out);
+            dependencyOffsets.writeTo(out);
+            dependencies.writeTo(out);
+            cycleOffsets.writeTo(out);
+            memberOffsets.writeTo(out);
+            members.writeTo(out);
+            out.writeInt(fixedPackages.size());
+            fixedPackages.writeTo(out);
+            out.writeInt(timePaths.size());
+            timePaths.writeTo(out);
+            for (long time : times) {
+                out.writeLong(time);
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * load a tree from a file. The tree is frozen and indexed like a published tree and keeps the saved modification
+     * times, so it can be updated and saved again.
+     *
+     * @param file    file to read from
+     * @param project project the tree is loaded for
+     * @param depth   analysis depth the tree has to be analyzed with
+     * @param charset charset the tree has to be analyzed with
+     * @return the loaded tree; null if the file does not exist, is unreadable, was written for another project or
+     * settings, or a directory or file of the project changed since the tree was saved
+     */
+    public static TreeSnapshot load(Path file, Project project, AnalysisDepth depth, String charset) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION
+                    || !readString(in).equals(project.getRootDir().toString())
+                    || !readString(in).equals(project.getBasepackage_dot())
+                    || !readString(in).equals(depth.name()) || !readString(in).equals(charset)) {
+                return null;
+            }
+            long buildMillis = in.getLong();
+            String[] strings = new String[in.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(in);
+            }
+            int nodeCount = in.getInt();
+            int[] nodeStrings = readInts(in, nodeCount * 3);
+            int[] layers = readInts(in, nodeCount);
+            int[] childOffsets = readInts(in, nodeCount + 1);
+            int[] children = readInts(in, childOffsets[nodeCount]);
+            int[] dependencyOffsets = readInts(in, nodeCount + 1);
+            int[] dependencies = readInts(in, dependencyOffsets[nodeCount]);
+            int[] cycleOffsets = readInts(in, nodeCount + 1);
+            int[] memberOffsets = readInts(in, cycleOffsets[nodeCount] + 1);
+            int[] members = readInts(in, memberOffsets[cycleOffsets[nodeCount]]);
+            int[] fixedPackages = readInts(in, in.getInt());
+            int[] timePaths = readInts(in, in.getInt());
+            Map<String, Long> modificationTimes = new HashMap<>(timePaths.length * 2);
+            for (int timePath : timePaths) {
+                long lastModified = in.getLong();
+                if (!isUnchanged(strings[timePath], lastModified)) {
+                    return null;
+                }
+                modificationTimes.put(strings[timePath], lastModified);
+            }
+
+            Node[] nodes = new Node[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                nodes[i] = new Node(new ArrayList<>(childOffsets[i + 1] - childOffsets[i]),
+                        strings[nodeStrings[3 * i]], strings[nodeStrings[3 * i + 1]], strings[nodeStrings[3 * i + 2]]);
+                nodes[i].setLayer(layers[i]);
+            }
+            for (int fixedPackage : fixedPackages) {
+                nodes[fixedPackage].setDependencies(Collections.emptyList());
+            }
+            for (int i = 0; i < nodeCount; i++) {
+                Node node = nodes[i];
+                for (int j = childOffsets[i]; j < childOffsets[i + 1]; j++) {
+                    node.getChildren().add(nodes[children[j]]);
+                }
+                if (!node.aggregatesDependencies()) {
+                    List<Node> nodeDependencies = new ArrayList<>(dependencyOffsets[i + 1] - dependencyOffsets[i]);
+                    for (int j = dependencyOffsets[i]; j < dependencyOffsets[i + 1]; j++) {
+                        nodeDependencies.add(nodes[dependencies[j]]);
+                    }
+                    node.setDependencies(nodeDependencies);
+                }
+                if (cycleOffsets[i + 1] > cycleOffsets[i]) {
+                    List<List<Node>> cycles = new ArrayList<>(cycleOffsets[i + 1] - cycleOffsets[i]);
+                    for (int c = cycleOffsets[i]; c < cycleOffsets[i + 1]; c++) {
+                        List<Node> cycle = new ArrayList<>(memberOffsets[c + 1] - memberOffsets[c]);
+                        for (int j = memberOffsets[c]; j < memberOffsets[c + 1]; j++) {
+                            cycle.add(nodes[members[j]]);
+                        }
+                        cycles.add(cycle);
+                    }
+                    node.setCycles(cycles);
+                }
+            }
+            Node root = nodes[0];
+            NodeIndex index = new NodeIndex(root);
+            root.freeze();
+            return new TreeSnapshot(root, index, buildMillis, modificationTimes);
+        } catch (IOException | RuntimeException e) {
+            // a truncated or corrupt file
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static boolean isUnchanged(String path, long lastModified) throws IOException {
+        try {
+            return Files.getLastModifiedTime(Paths.get(path)).toMillis() == lastModified;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private static void collectNodes(Node node, List<Node> nodes) {
+        nodes.add(node);
+        for (Node child : node.getChildren()) {
+            collectNodes(child, nodes);
+        }
+    }
+
+    private static int stringIndex(Map<String, Integer> strings, String string) {
+        return strings.computeIfAbsent(string, key -> strings.size());
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        String string = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return string;
+    }
+
+    private static int[] readInts(ByteBuffer in, int count) {
+        int[] ints = new int[count];
+        in.asIntBuffer().get(ints);
+        in.position(in.position() + count * Integer.BYTES);
+        return ints;
+    }
+
+    /**
+     * growable int array, written as its values without a length
+     */
+    private static class IntArray {
+
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            for (int i = 0; i < size; i++) {
+                out.writeInt(values[i]);
+            }
+        }
+    }
+}
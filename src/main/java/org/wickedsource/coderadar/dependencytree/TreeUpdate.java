@@ -0,0 +1,555 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * Updates a published tree after some of its files changed instead of building it again. The nodes of the published
+ * tree are frozen and shared with its readers, so every Node the update changes is copied: the changed files, their
+ * ancestors up to the root and the siblings whose layer changes. All other subtrees are shared with the previous tree.
+ * Only the copied packages are sorted and layered again, so an update takes time in the number of changed files and
+ * the size of their packages, not in the size of the tree.
+ *   modified files are parsed again through the DependencyCache of the DependencyTree, a file whose dependencies did
+ *   not change is not copied
+ *   added and deleted files change what the dependencies of other files resolve to, these files are found with
+ *   DependencyCache.getReferencingFiles and resolved again
+ * Changes which add or remove packages or modules can not be updated, the tree has to be built again then.
+ * Unchanged files keep their dependencies on nodes which were replaced by copies. Node objects are compared by id,
+ * so the updated tree is the same as a tree built again, but the replaced nodes stay in memory. Once the names the
+ * updates changed are a quarter of the index, the tree is not updated anymore but built again.
+ * An update is used like a DependencyTree: setDependencies(changedPaths), sortTree() and setLayer(), then
+ * getSnapshot(buildMillis) freezes the copies and returns the updated tree.
+ */
+public class TreeUpdate {
+
+    // the tree is built again once more than this share of the names in its index changed
+    private static final int MAX_CHANGED_NAMES_DIVISOR = 4;
+
+    private final DependencyTree dependencyTree;
+    private final TreeSnapshot previous;
+    private final AnalysisProgress progress;
+    // parents of the nodes of the previous tree found by findNode. The parent links of the nodes can not be followed:
+    // nodes a later tree shares are linked to their parents in that tree.
+    private final Map<Node, Node> parents = new IdentityHashMap<>();
+    // copies of the nodes of the previous tree by the copied Node
+    private final Map<Node, Node> copies = new IdentityHashMap<>();
+    // copies and added files, they are frozen by getSnapshot
+    private final Set<Node> created = Collections.newSetFromMap(new IdentityHashMap<>());
+    // copied packages containing changed files, they are sorted and layered again
+    private final Set<Node> changedPackages = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<Node> addedFiles = new ArrayList<>();
+    private final List<Node> removedFiles = new ArrayList<>();
+    // copies of files with changed dependencies and added files
+    private final List<Node> resolvedFiles = new ArrayList<>();
+    // modification times of the previous tree with the changes applied, null if they are not kept
+    private final Map<String, Long> modificationTimes;
+    // index of the previous tree with the added and deleted files
+    private NodeIndex resolveIndex;
+    // copy of the root, null as long as nothing changed
+    private Node root;
+
+    /**
+     * @param dependencyTree parses and resolves the changed files, with the DependencyCache and progress of the project
+     * @param previous       published tree to update
+     */
+    public TreeUpdate(DependencyTree dependencyTree, TreeSnapshot previous) {
+        this.dependencyTree = dependencyTree;
+        this.previous = previous;
+        this.progress = dependencyTree.getProgress();
+        this.modificationTimes = previous.getModificationTimes() != null ? new HashMap<>(previous.getModificationTimes()) : null;
+    }
+
+    /**
+     * parse the changed files and resolve the dependencies of every file whose dependencies may have changed; the
+     * files with changed dependencies are copied together with their ancestors
+     *
+     * @param changedPaths paths of the files and directories which changed since the previous tree was built
+     * @return false if the changes can not be updated, e.g. a package was added or deleted, and the tree has to be
+     * built again; nothing has been changed then
+     */
+    public boolean setDependencies(Collection<Path> changedPaths) {
+        NodeIndex index = previous.getIndex();
+        if (previous.getRoot() == null || !previous.getRoot().getPackageName().isEmpty()
+                || index.getChangedSize() > index.size() / MAX_CHANGED_NAMES_DIVISOR) {
+            return false;
+        }
+        List<Node> modifiedFiles = new ArrayList<>();
+        for (Path path : changedPaths) {
+            BasicFileAttributes attributes = readAttributes(path);
+            Node node = findNode(path);
+            if (Paths.get(node.getPath()).equals(path)) {
+                if (node.hasChildren()) {
+                    // changes in a listed directory are seen as changes of its files, a deleted one removes a package
+                    if (attributes == null || !attributes.isDirectory()) {
+                        return false;
+                    }
+                } else if (attributes == null) {
+                    if (parents.get(node).getPackageName().isEmpty()) {
+                        // a file outside of the packages of a module
+                        return false;
+                    }
+                    removedFiles.add(node);
+                } else if (attributes.isRegularFile()) {
+                    modifiedFiles.add(node);
+                    setModificationTime(path, attributes.lastModifiedTime().toMillis());
+                } else {
+                    return false;
+                }
+            } else if (attributes == null) {
+                // a deleted directory, e.g. moved away, which contained nodes
+                for (Node child : node.getChildren()) {
+                    if (Paths.get(child.getPath()).startsWith(path)) {
+                        return false;
+                    }
+                }
+            } else if (attributes.isRegularFile() && path.getFileName().toString().endsWith(".java")) {
+                if (!path.getParent().equals(Paths.get(node.getPath()))) {
+                    // a new source directory, unless createTree skips it
+                    if (!isSkipped(Paths.get(node.getPath()).relativize(path.getParent()))) {
+                        return false;
+                    }
+                } else if (node.getPackageName().isEmpty()) {
+                    // a file outside of the packages of a module
+                    return false;
+                } else if (!DependencyTree.isForbidden(path.getFileName().toString())) {
+                    String filename = path.getFileName().toString();
+                    Node added = new Node(new LinkedList<>(), path.toString(), filename, node.getPackageName() + "." + filename);
+                    added.setParent(node);
+                    parents.put(added, node);
+                    addedFiles.add(added);
+                    created.add(added);
+                    setModificationTime(path, attributes.lastModifiedTime().toMillis());
+                }
+            }
+        }
+        if (!addedFiles.isEmpty() || !removedFiles.isEmpty()) {
+            if (dependencyTree.getDependencyCache() == null || removesPackage()) {
+                return false;
+            }
+        }
+
+        resolveIndex = getResolveIndex(index);
+        Set<Node> files = new LinkedHashSet<>(modifiedFiles);
+        files.addAll(getReferencingFiles());
+        files.removeAll(removedFiles);
+        files.addAll(addedFiles);
+        List<Node> resolveFiles = new ArrayList<>(files);
+        List<NodeSet> resolved = dependencyTree.resolveFiles(resolveFiles, resolveIndex);
+        for (int i = 0; i < resolveFiles.size(); i++) {
+            Node file = resolveFiles.get(i);
+            if (created.contains(file)) {
+                file.setDependencies(resolved.get(i));
+                resolvedFiles.add(file);
+            } else if (!sameNodes(file.getDependencies(), resolved.get(i))) {
+                Node copy = copyWithAncestors(file);
+                copy.setDependencies(resolved.get(i));
+                resolvedFiles.add(copy);
+            }
+        }
+        for (Node file : removedFiles) {
+            copyWithAncestors(parents.get(file)).getChildren().remove(file);
+        }
+        for (Node file : addedFiles) {
+            copyWithAncestors(parents.get(file)).getChildren().add(file);
+        }
+        if (modificationTimes != null) {
+            for (Node file : removedFiles) {
+                modificationTimes.remove(file.getPath());
+            }
+            // creating or deleting any file changes the modification time of its directory
+            Set<Path> directories = new HashSet<>();
+            for (Path path : changedPaths) {
+                directories.add(path.getParent());
+            }
+            for (Path directory : directories) {
+                if (modificationTimes.containsKey(directory.toString())) {
+                    updateModificationTime(directory);
+                }
+            }
+        }
+        if (!removedFiles.isEmpty()) {
+            List<String> removedPaths = new ArrayList<>(removedFiles.size());
+            for (Node file : removedFiles) {
+                removedPaths.add(file.getPath());
+            }
+            dependencyTree.getDependencyCache().removeAll(removedPaths);
+        }
+        return true;
+    }
+
+    /**
+     * sort the children of every changed package, see DependencyTree.sortTree(Node node); the children of other
+     * packages did not change
+     */
+    public void sortTree() {
+        if (root != null) {
+            sortTree(root);
+        }
+    }
+
+    private void sortTree(Node node) {
+        for (Node child : node.getChildren()) {
+            if (changedPackages.contains(child)) {
+                sortTree(child);
+            }
+        }
+        NodeComparator.sort(node.getChildren());
+        progress.nodeSorted();
+    }
+
+    /**
+     * layer the children of every changed package, see DependencyTree.setLayer(Node node). A child of the previous
+     * tree whose layer changes is copied.
+     */
+    public void setLayer() {
+        if (root != null) {
+            setLayer(root);
+        }
+    }
+
+    private void setLayer(Node node) {
+        List<Node> children = node.getChildren();
+        SiblingDependencyMatrix<Node> matrix = new SiblingDependencyMatrix<>(NodeTreeView.INSTANCE, children);
+        SiblingLayering layering = new SiblingLayering(matrix);
+        for (int i = 0; i < children.size(); i++) {
+            Node child = children.get(i);
+            int layer = layering.getLayer(i);
+            if (child.getLayer() != layer) {
+                if (!created.contains(child)) {
+                    child = copy(child);
+                    child.setParent(node);
+                    children.set(i, child);
+                }
+                child.setLayer(layer);
+            }
+        }
+        List<List<Node>> cycles = new ArrayList<>();
+        for (int[] cycle : layering.getCycles()) {
+            List<Node> members = new ArrayList<>(cycle.length);
+            for (int i : cycle) {
+                members.add(children.get(i));
+            }
+            cycles.add(members);
+        }
+        node.setCycles(cycles);
+        progress.nodesLayered(matrix.size());
+        for (Node child : children) {
+            if (changedPackages.contains(child)) {
+                setLayer(child);
+            }
+        }
+    }
+
+    /**
+     * link the copies into the updated tree, index and freeze them
+     *
+     * @param buildMillis time it took to update the tree
+     * @return the updated tree, sharing all nodes which did not change with the previous tree
+     */
+    public TreeSnapshot getSnapshot(long buildMillis) {
+        if (root == null) {
+            return new TreeSnapshot(previous.getRoot(), previous.getIndex(), buildMillis, previous.getEstimatedBytes(),
+                    modificationTimes);
+        }
+        // the dependencies were resolved before all nodes were copied
+        for (Node file : resolvedFiles) {
+            List<Node> dependencies = file.getDependencies();
+            for (int i = 0; i < dependencies.size(); i++) {
+                Node copy = copies.get(dependencies.get(i));
+                if (copy != null) {
+                    dependencies.set(i, copy);
+                }
+            }
+        }
+        long estimatedBytes = previous.getEstimatedBytes();
+        for (Map.Entry<Node, Node> copy : copies.entrySet()) {
+            estimatedBytes += TreeSnapshot.estimateNodeBytes(copy.getValue()) - TreeSnapshot.estimateNodeBytes(copy.getKey());
+        }
+        for (Node file : addedFiles) {
+            estimatedBytes += TreeSnapshot.estimateNodeBytes(file);
+        }
+        for (Node file : removedFiles) {
+            estimatedBytes -= TreeSnapshot.estimateNodeBytes(file);
+        }
+        NodeIndex index = getIndex();
+        // children shared with the previous tree are linked to the copies, so the root of the updated tree is found
+        // from them; readers of the previous tree following these links find nodes with the same ids
+        for (Node node : created) {
+            for (Node child : node.getChildren()) {
+                child.setParent(node);
+            }
+        }
+        for (Node node : created) {
+            node.freezeNode();
+        }
+        return new TreeSnapshot(root, index, buildMillis, estimatedBytes, modificationTimes);
+    }
+
+    /**
+     * @return the Node of the previous tree with the given path, or the deepest Node containing the path
+     */
+    private Node findNode(Path path) {
+        Node node = previous.getRoot();
+        while (true) {
+            Node next = null;
+            for (Node child : node.getChildren()) {
+                if (path.startsWith(child.getPath())) {
+                    next = child;
+                    break;
+                }
+            }
+            if (next == null) {
+                return node;
+            }
+            parents.put(next, node);
+            node = next;
+        }
+    }
+
+    /**
+     * @return attributes of a file or directory, null if it does not exist anymore
+     */
+    private static BasicFileAttributes readAttributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * @param directory path of a directory relative to a Node
+     * @return true if createTree skips one of the directories on the path
+     */
+    private static boolean isSkipped(Path directory) {
+        for (Path name : directory) {
+            if (DependencyTree.isForbidden(name.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if all files of a package are deleted, which removes the package
+     */
+    private boolean removesPackage() {
+        Map<Node, Integer> removedChildren = new IdentityHashMap<>();
+        for (Node file : removedFiles) {
+            removedChildren.merge(parents.get(file), 1, Integer::sum);
+        }
+        for (Node file : addedFiles) {
+            removedChildren.merge(parents.get(file), -1, Integer::sum);
+        }
+        for (Map.Entry<Node, Integer> removed : removedChildren.entrySet()) {
+            if (removed.getValue() >= removed.getKey().getChildren().size()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return index of the previous tree in which the added files can be found and the deleted files can not
+     */
+    private NodeIndex getResolveIndex(NodeIndex index) {
+        Map<String, List<Node>> files = new HashMap<>();
+        Map<String, List<Node>> packageChildren = new HashMap<>();
+        for (Node file : removedFiles) {
+            String name = getName(file);
+            List<Node> named = new ArrayList<>(files.containsKey(name) ? files.get(name) : index.getFiles(name));
+            named.remove(file);
+            files.put(name, named);
+            String packageName = parents.get(file).getPackageName();
+            List<Node> children = new ArrayList<>(packageChildren.containsKey(packageName)
+                    ? packageChildren.get(packageName) : index.getPackageChildren(packageName));
+            children.remove(file);
+            packageChildren.put(packageName, children);
+        }
+        for (Node file : addedFiles) {
+            String name = getName(file);
+            List<Node> named = new ArrayList<>(files.containsKey(name) ? files.get(name) : index.getFiles(name));
+            named.add(file);
+            files.put(name, named);
+            String packageName = parents.get(file).getPackageName();
+            packageChildren.put(packageName, withChild(packageChildren.containsKey(packageName)
+                    ? packageChildren.get(packageName) : index.getPackageChildren(packageName), file));
+        }
+        return files.isEmpty() ? index : new NodeIndex(index, files, Collections.emptyMap(), packageChildren);
+    }
+
+    /**
+     * insert a file into the children of the packages with a name in the order createTree lists them: the children
+     * of each package together, directories first, each sorted by path
+     */
+    private static List<Node> withChild(List<Node> children, Node added) {
+        List<Node> updated = new ArrayList<>(children);
+        Path path = Paths.get(added.getPath());
+        int position = -1;
+        for (int i = 0; i < updated.size(); i++) {
+            Node child = updated.get(i);
+            if (path.getParent().equals(Paths.get(child.getPath()).getParent())) {
+                if (position < 0) {
+                    position = i;
+                }
+                if (child.hasChildren() || Paths.get(child.getPath()).compareTo(path) < 0) {
+                    position = i + 1;
+                }
+            }
+        }
+        updated.add(position < 0 ? updated.size() : position, added);
+        return updated;
+    }
+
+    /**
+     * @return files of the previous tree with a dependency which may resolve differently after files were added or
+     * deleted: on the name of an added or deleted file or on all classes of its package
+     */
+    private Set<Node> getReferencingFiles() {
+        DependencyCache dependencyCache = dependencyTree.getDependencyCache();
+        String prefix = dependencyTree.getBasepackage_dot() + ".";
+        Set<String> paths = new HashSet<>();
+        for (List<Node> changed : Arrays.asList(addedFiles, removedFiles)) {
+            for (Node file : changed) {
+                paths.addAll(dependencyCache.getReferencingFiles(prefix + getName(file)));
+                paths.addAll(dependencyCache.getReferencingFiles(prefix + parents.get(file).getPackageName() + ".*"));
+            }
+        }
+        Set<Node> files = new LinkedHashSet<>();
+        for (String path : paths) {
+            Node node = findNode(Paths.get(path));
+            if (node.getPath().equals(path) && !node.hasChildren()) {
+                files.add(node);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * @return index of the updated tree: the previous index with the names of the copied and the added and deleted
+     * nodes replaced
+     */
+    private NodeIndex getIndex() {
+        Map<String, List<Node>> files = new HashMap<>();
+        Map<String, List<Node>> packages = new HashMap<>();
+        Map<String, List<Node>> packageChildren = new HashMap<>();
+        for (List<Node> changed : Arrays.asList(addedFiles, removedFiles)) {
+            for (Node file : changed) {
+                files.put(getName(file), withCopies(resolveIndex.getFiles(getName(file))));
+            }
+        }
+        for (Node copy : copies.values()) {
+            String name = copy.getPackageName();
+            if (name.isEmpty()) {
+                // modules and directories outside of the packages are not indexed
+                continue;
+            }
+            if (copy.hasChildren()) {
+                packages.put(name, withCopies(resolveIndex.getPackages(name)));
+                packageChildren.put(name, withCopies(resolveIndex.getPackageChildren(name)));
+            } else {
+                files.put(getName(copy), withCopies(resolveIndex.getFiles(getName(copy))));
+            }
+        }
+        // the top level packages and files of all modules
+        packageChildren.put("", withCopies(resolveIndex.getPackageChildren("")));
+        return new NodeIndex(previous.getIndex(), files, packages, packageChildren);
+    }
+
+    private List<Node> withCopies(List<Node> nodes) {
+        List<Node> updated = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            updated.add(copies.getOrDefault(node, node));
+        }
+        return updated;
+    }
+
+    /**
+     * copy a Node of the previous tree and its ancestors, unless they have been copied already. Each copy replaces
+     * the Node in the children of the copy of its parent.
+     *
+     * @return copy of the Node
+     */
+    private Node copyWithAncestors(Node node) {
+        Node copy = copies.get(node);
+        if (copy != null) {
+            return copy;
+        }
+        copy = copy(node);
+        if (node == previous.getRoot()) {
+            root = copy;
+        } else {
+            Node parent = copyWithAncestors(parents.get(node));
+            List<Node> siblings = parent.getChildren();
+            for (int i = 0; i < siblings.size(); i++) {
+                if (siblings.get(i) == node) {
+                    siblings.set(i, copy);
+                    break;
+                }
+            }
+            copy.setParent(parent);
+        }
+        if (copy.hasChildren()) {
+            changedPackages.add(copy);
+        }
+        return copy;
+    }
+
+    private Node copy(Node node) {
+        Node copy = node.copy();
+        copies.put(node, copy);
+        created.add(copy);
+        return copy;
+    }
+
+    private void setModificationTime(Path path, long lastModified) {
+        if (modificationTimes != null) {
+            modificationTimes.put(path.toString(), lastModified);
+        }
+    }
+
+    /**
+     * read the modification time of a listed directory again
+     */
+    private void updateModificationTime(Path directory) {
+        if (modificationTimes != null) {
+            try {
+                modificationTimes.put(directory.toString(), Files.getLastModifiedTime(directory).toMillis());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * @return qualified name of a file relative to the base package, as it is indexed
+     */
+    private static String getName(Node file) {
+        String name = file.getPackageName();
+        return name.endsWith(".java") ? name.substring(0, name.length() - ".java".length()) : name;
+    }
+
+    /**
+     * @return true if two lists contain the same nodes in the same order
+     */
+    private static boolean sameNodes(List<Node> nodes, List<Node> others) {
+        if (nodes.size() != others.size()) {
+            return false;
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            if (nodes.get(i).getId() != others.get(i).getId()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,53 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import java.util.List;
+
+/**
+ * Read access to an analyzed tree independent of how the tree is stored, used by NodeSerializer and
+ * SiblingDependencyMatrix. A node is identified by a handle: the Node itself for a tree of Node objects, see
+ * NodeTreeView, or the index of the node in a ColumnarTree. Handles are compared with equals.
+ *
+ * @param <N> handle of a node
+ */
+public interface TreeView<N> {
+
+    String getFilename(N node);
+
+    String getPath(N node);
+
+    String getPackageName(N node);
+
+    int getLayer(N node);
+
+    List<N> getChildren(N node);
+
+    /**
+     * @return files and packages the node has dependencies on; for a package the dependencies of all its files
+     */
+    List<N> getDependencies(N node);
+
+    /**
+     * @return groups of children which depend on each other in a cycle
+     */
+    List<List<N>> getCycles(N node);
+
+    /**
+     * @return parent of the node, null for the root
+     */
+    N getParent(N node);
+
+    /**
+     * @return id of the qualified package name of a package, equal for packages with the same name in different
+     * modules; -1 for files and modules, see Node.getPackageId()
+     */
+    int getPackageId(N node);
+
+    /**
+     * @return id of the node, distinct for all nodes of one tree; Node.getId() for a tree of Node objects
+     */
+    int getId(N node);
+
+    default boolean hasChildren(N node) {
+        return !getChildren(node).isEmpty();
+    }
+}
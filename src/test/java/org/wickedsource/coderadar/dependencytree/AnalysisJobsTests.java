@@ -0,0 +1,71 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import org.junit.Test;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class AnalysisJobsTests {
+
+    private static Project project(String name) {
+        return new Project(Paths.get("/projects", name), "org.example", new DependencyCache("org.example"));
+    }
+
+    @Test
+    public void unfinishedJobOfProjectIsReturnedTest() {
+        AnalysisJobs jobs = new AnalysisJobs(10, 0);
+        List<Runnable> queued = new ArrayList<>();
+        Executor executor = queued::add;
+        AnalysisJob first = jobs.submit(project("a"), job -> job.finish(null), executor);
+        assertSame(first, jobs.submit(project("a"), job -> job.finish(null), executor));
+        assertNotSame(first, jobs.submit(project("b"), job -> job.finish(null), executor));
+        assertEquals(2, queued.size());
+        assertEquals(AnalysisJob.State.QUEUED, first.getState());
+        assertEquals(AnalysisProgress.Phase.QUEUED, first.getPhase());
+
+        queued.get(0).run();
+        assertTrue(first.isFinished());
+        assertEquals(AnalysisProgress.Phase.DONE, first.getPhase());
+        assertNotSame(first, jobs.submit(project("a"), job -> job.finish(null), executor));
+    }
+
+    @Test
+    public void oldestFinishedJobsAreEvictedTest() {
+        AnalysisJobs jobs = new AnalysisJobs(2, 0);
+        Executor executor = Runnable::run;
+        AnalysisJob a = jobs.submit(project("a"), job -> job.finish(null), executor);
+        AnalysisJob b = jobs.submit(project("b"), job -> job.fail("error"), executor);
+        AnalysisJob running = jobs.submit(project("c"), job -> job.start(new AnalysisProgress()), executor);
+        AnalysisJob d = jobs.submit(project("d"), job -> job.finish(null), executor);
+        assertNull(jobs.get(a.getId()));
+        assertSame(b, jobs.get(b.getId()));
+        assertSame(running, jobs.get(running.getId()));
+        assertSame(d, jobs.get(d.getId()));
+        assertEquals("error", b.getError());
+    }
+
+    @Test
+    public void jobJoiningFinishingBuildIsDoneTest() {
+        Project project = project("a");
+        // a build marked its progress DONE but has not returned yet, so the job gets the progress of the next build
+        AnalysisProgress finishing = project.nextBuildProgress();
+        finishing.setPhase(AnalysisProgress.Phase.DONE);
+        AnalysisJob job = new AnalysisJob(project);
+        AnalysisProgress next = project.nextBuildProgress();
+        assertNotSame(finishing, next);
+        job.start(next);
+        assertEquals(AnalysisProgress.Phase.QUEUED, job.getPhase());
+        // the job joined the finishing build and got its result
+        job.finish(null);
+        assertEquals(AnalysisProgress.Phase.DONE, job.getPhase());
+
+        AnalysisJob failed = new AnalysisJob(project);
+        failed.start(project.nextBuildProgress());
+        failed.fail("error");
+        assertEquals(AnalysisProgress.Phase.FAILED, failed.getPhase());
+    }
+}
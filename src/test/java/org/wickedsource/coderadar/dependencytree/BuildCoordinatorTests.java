@@ -0,0 +1,58 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import org.junit.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BuildCoordinatorTests {
+
+    @Test
+    public void concurrentBuildsAreSharedTest() throws Exception {
+        BuildCoordinator<String, Object> builds = new BuildCoordinator<>(1);
+        AtomicInteger buildCount = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Callable<Object> request = () -> builds.build("project", () -> {
+                buildCount.incrementAndGet();
+                started.countDown();
+                try {
+                    finish.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return new Object();
+            });
+            Future<Object> first = executor.submit(request);
+            started.await();
+            Future<Object> second = executor.submit(request);
+            Future<Object> third = executor.submit(request);
+            while (!builds.isBuilding("project")) {
+                Thread.sleep(1);
+            }
+            // give the other requests time to join the running build
+            Thread.sleep(50);
+            finish.countDown();
+            assertSame(first.get(), second.get());
+            assertSame(first.get(), third.get());
+            assertEquals(1, buildCount.get());
+            assertFalse(builds.isBuilding("project"));
+            // a later request builds again
+            assertNotSame(first.get(), executor.submit(request).get());
+            assertEquals(2, buildCount.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failedBuildTest() {
+        new BuildCoordinator<String, Object>(1).build("project", () -> {
+            throw new IllegalArgumentException();
+        });
+    }
+}
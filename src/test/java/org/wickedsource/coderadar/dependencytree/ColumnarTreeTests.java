@@ -0,0 +1,128 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class ColumnarTreeTests {
+
+    private Path projectDir;
+    private Node root;
+
+    @Before
+    public void analyzeProject() throws IOException {
+        projectDir = Files.createTempDirectory("columnar-project");
+        write("core/src/main/java/org/example/a/A.java", "import org.example.a.b.B;");
+        write("core/src/main/java/org/example/a/b/B.java", "import org.example.a.*;");
+        write("core/src/main/java/org/example/C.java", "import org.example.a.A;");
+        write("web/src/main/java/org/example/a/D.java", "import org.example.C;\nimport org.example.a.b.B;");
+        root = new Node(new LinkedList<>(), projectDir.toString(), projectDir.getFileName().toString(), "");
+        DependencyTree dependencyTree = new DependencyTree("org/example", "org.example", root);
+        dependencyTree.createTree(root);
+        dependencyTree.setDependencies(root);
+        root.setDependencies(new LinkedList<>());
+        dependencyTree.sortTree(root);
+        dependencyTree.setLayer(root);
+        root.freeze();
+    }
+
+    private void write(String file, String imports) throws IOException {
+        Path path = projectDir.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.write(path, (imports + "\nclass X {}\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void deleteProject() throws IOException {
+        try (Stream<Path> paths = Files.walk(projectDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static <N> JsonNode write(TreeView<N> view, N node) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        StringWriter json = new StringWriter();
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(json)) {
+            NodeSerializer.writeTree(view, node, -1, gen);
+        }
+        return objectMapper.readTree(json.toString());
+    }
+
+    /**
+     * compare two written trees; dependencies are compared as sets, a ColumnarTree derives the dependencies of a
+     * package in the order of the sorted tree
+     */
+    private static void assertSameTree(JsonNode expected, JsonNode actual) {
+        assertEquals(expected.get("path"), actual.get("path"));
+        assertEquals(expected.get("filename"), actual.get("filename"));
+        assertEquals(expected.get("packageName"), actual.get("packageName"));
+        assertEquals(expected.get("layer"), actual.get("layer"));
+        assertEquals(expected.get("cycles"), actual.get("cycles"));
+        assertEquals(paths(expected.get("dependencies")), paths(actual.get("dependencies")));
+        assertEquals(expected.get("children").size(), actual.get("children").size());
+        for (int i = 0; i < expected.get("children").size(); i++) {
+            assertSameTree(expected.get("children").get(i), actual.get("children").get(i));
+        }
+    }
+
+    private static Set<String> paths(JsonNode dependencies) {
+        Set<String> paths = new HashSet<>();
+        dependencies.forEach(dependency -> paths.add(dependency.get("path").asText()));
+        return paths;
+    }
+
+    @Test
+    public void columnarTreeIsWrittenLikeNodesTest() throws IOException {
+        ColumnarTree tree = ColumnarTree.of(root);
+        assertEquals(10, tree.size());
+        assertSameTree(write(NodeTreeView.INSTANCE, root), write(tree, tree.getRoot()));
+    }
+
+    @Test
+    public void packageDependenciesAreDerivedFromFilesTest() {
+        ColumnarTree tree = ColumnarTree.of(root);
+        Node core = root.getChildByName("core");
+        Integer columnarCore = tree.getChildren(tree.getRoot()).stream()
+                .filter(node -> tree.getFilename(node).equals("core")).findFirst().get();
+        assertEquals(core.getDependencies().stream().map(Node::getPath).collect(Collectors.toSet()),
+                tree.getDependencies(columnarCore).stream().map(tree::getPath).collect(Collectors.toSet()));
+        assertTrue(tree.getDependencies(tree.getRoot()).isEmpty());
+    }
+
+    @Test
+    public void siblingMatrixOfColumnarTreeCountsLikeNodesTest() {
+        ColumnarTree tree = ColumnarTree.of(root);
+        assertSameMatrices(root, tree, tree.getRoot());
+    }
+
+    private static void assertSameMatrices(Node node, ColumnarTree tree, Integer columnarNode) {
+        if (!node.hasChildren()) {
+            return;
+        }
+        SiblingDependencyMatrix<Node> expected = new SiblingDependencyMatrix<>(NodeTreeView.INSTANCE, node.getChildren());
+        SiblingDependencyMatrix<Integer> actual = new SiblingDependencyMatrix<>(tree, tree.getChildren(columnarNode));
+        SiblingLayering expectedLayering = new SiblingLayering(expected);
+        SiblingLayering actualLayering = new SiblingLayering(actual);
+        for (int i = 0; i < expected.size(); i++) {
+            for (int j = 0; j < expected.size(); j++) {
+                assertEquals(expected.countDependencies(i, j), actual.countDependencies(i, j));
+            }
+            assertEquals(expectedLayering.getLayer(i), actualLayering.getLayer(i));
+            assertSameMatrices(node.getChildren().get(i), tree, tree.getChildren(columnarNode).get(i));
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class DependencyCacheTests {
+
+    private static final String BASEPACKAGE_DOT = "org.example";
+
+    private Path dir;
+    private Path file;
+    private SourceScanner scanner;
+    private DependencyCache cache;
+
+    @Before
+    public void createFile() throws IOException {
+        dir = Files.createTempDirectory("dependency-cache");
+        file = dir.resolve("A.java");
+        write("import org.example.B;\nclass A {}\n", 1000000L);
+        scanner = new SourceScanner(BASEPACKAGE_DOT);
+        cache = new DependencyCache(BASEPACKAGE_DOT);
+    }
+
+    @After
+    public void deleteFiles() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private void write(String content, long lastModified) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified));
+    }
+
+    /**
+     * @return dependencies of the file and if it was scanned for them
+     */
+    private boolean scanned(List<String> expected) throws IOException {
+        long bytesRead = scanner.getBytesRead();
+        assertEquals(expected, cache.getDependencies(file, scanner));
+        return scanner.getBytesRead() > bytesRead;
+    }
+
+    @Test
+    public void unchangedFileIsNotScannedAgainTest() throws IOException {
+        List<String> b = Collections.singletonList("org.example.B");
+        assertTrue(scanned(b));
+        assertTrue(cache.isModified());
+        assertFalse(scanned(b));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void changedFileIsScannedAgainTest() throws IOException {
+        scanned(Collections.singletonList("org.example.B"));
+        // new modification time and size
+        write("import org.example.Cc;\nclass A {}\n", 2000000L);
+        assertTrue(scanned(Collections.singletonList("org.example.Cc")));
+        // new modification time, same size, different content hash
+        write("import org.example.Dd;\nclass A {}\n", 3000000L);
+        assertTrue(scanned(Collections.singletonList("org.example.Dd")));
+        // new size, same modification time
+        write("import org.example.E;\nclass A {}\n", 3000000L);
+        assertTrue(scanned(Collections.singletonList("org.example.E")));
+    }
+
+    @Test
+    public void touchedFileIsNotScannedAgainTest() throws IOException {
+        scanned(Collections.singletonList("org.example.B"));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(2000000L));
+        assertFalse(scanned(Collections.singletonList("org.example.B")));
+        // the entry got the new modification time, so the content is not hashed again
+        long bytesRead = scanner.getBytesRead();
+        cache.getDependencies(file, scanner);
+        assertEquals(bytesRead, scanner.getBytesRead());
+    }
+
+    @Test
+    public void deletedFilesAreRemovedTest() throws IOException {
+        scanned(Collections.singletonList("org.example.B"));
+        Path other = dir.resolve("Other.java");
+        Files.write(other, "class Other {}\n".getBytes(StandardCharsets.UTF_8));
+        cache.getDependencies(other, scanner);
+        assertEquals(2, cache.size());
+
+        Files.delete(other);
+        cache.retainAll(Collections.singleton(file.toString()));
+        assertEquals(1, cache.size());
+        // a file created again under the same path is scanned again
+        Files.write(other, "import org.example.B;\nclass Other {}\n".getBytes(StandardCharsets.UTF_8));
+        long bytesRead = scanner.getBytesRead();
+        assertEquals(Collections.singletonList("org.example.B"), cache.getDependencies(other, scanner));
+        assertTrue(scanner.getBytesRead() > bytesRead);
+    }
+
+    @Test
+    public void referencingFilesAreFoundTest() throws IOException {
+        write("import org.example.p.B;\nimport org.example.q.*;\nclass A {}\n", 1000000L);
+        cache.getDependencies(file, scanner);
+        Path other = dir.resolve("Other.java");
+        Files.write(other, "class Other extends org.example.p.B.Inner {}\n".getBytes(StandardCharsets.UTF_8));
+        cache.getDependencies(other, scanner);
+
+        assertEquals(new HashSet<>(Arrays.asList(file.toString(), other.toString())),
+                cache.getReferencingFiles("org.example.p.B"));
+        assertEquals(Collections.singleton(file.toString()), cache.getReferencingFiles("org.example.q.*"));
+        assertEquals(Collections.emptySet(), cache.getReferencingFiles("org.example.p.Bb"));
+        // the index is kept up to date with changed and removed entries
+        write("import org.example.p.Bb;\nclass A {}\n", 2000000L);
+        cache.getDependencies(file, scanner);
+        assertEquals(Collections.singleton(file.toString()), cache.getReferencingFiles("org.example.p.Bb"));
+        cache.removeAll(Collections.singleton(other.toString()));
+        assertEquals(Collections.emptySet(), cache.getReferencingFiles("org.example.p.B"));
+    }
+
+    @Test
+    public void savedCacheIsLoadedTest() throws IOException {
+        scanned(Collections.singletonList("org.example.B"));
+        Path cacheFile = dir.resolve("cache.bin");
+        cache.save(cacheFile);
+        assertFalse(cache.isModified());
+
+        cache = DependencyCache.load(cacheFile, BASEPACKAGE_DOT, AnalysisDepth.FULL);
+        assertEquals(1, cache.size());
+        assertFalse(scanned(Collections.singletonList("org.example.B")));
+        // a cache of another base package or analysis depth is not used
+        assertEquals(0, DependencyCache.load(cacheFile, "org.other", AnalysisDepth.FULL).size());
+        assertEquals(0, DependencyCache.load(cacheFile, BASEPACKAGE_DOT, AnalysisDepth.IMPORTS_ONLY).size());
+    }
+
+    /**
+     * @return source of a file of at least the given size, with the given qualified usage at its end
+     */
+    private static String largeSource(int size, String usage) {
+        StringBuilder source = new StringBuilder("import org.example.B;\nclass A {\n");
+        while (source.length() < size) {
+            source.append("    // padding of a large file\n");
+        }
+        return source.append("    ").append(usage).append(" field;\n}\n").toString();
+    }
+
+    @Test
+    public void mappedFileIsHashedWithoutCopyTest() throws IOException {
+        // larger than the mapping threshold of SourceScanner
+        write(largeSource(300 * 1024, "org.example.Cc"), 1000000L);
+        assertTrue(scanned(Arrays.asList("org.example.B", "org.example.Cc")));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(2000000L));
+        assertFalse(scanned(Arrays.asList("org.example.B", "org.example.Cc")));
+        // same size, changed at the end
+        write(largeSource(300 * 1024, "org.example.Dd"), 3000000L);
+        assertTrue(scanned(Arrays.asList("org.example.B", "org.example.Dd")));
+    }
+
+    @Test
+    public void importsOnlyReadsHeadOfFileTest() throws IOException {
+        scanner = new SourceScanner(BASEPACKAGE_DOT, StandardCharsets.UTF_8, AnalysisDepth.IMPORTS_ONLY);
+        // read into the pooled buffer and mapped
+        for (int size : new int[]{20 * 1024, 300 * 1024}) {
+            cache = new DependencyCache(BASEPACKAGE_DOT, AnalysisDepth.IMPORTS_ONLY);
+            write(largeSource(size, "org.example.Cc"), 1000000L);
+            long bytesRead = scanner.getBytesRead();
+            assertEquals(Collections.singletonList("org.example.B"), cache.getDependencies(file, scanner));
+            assertEquals(8 * 1024, scanner.getBytesRead() - bytesRead);
+            // changed after the head only, the dependencies are taken from the cache
+            write(largeSource(size, "org.example.Dd"), 2000000L);
+            assertFalse(scanned(Collections.singletonList("org.example.B")));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DependencyTreeMetricsTests {
+
+    private static final String BASEPACKAGE = "org/wickedsource/dependencytree/test";
+    private static final String BASEPACKAGE_DOT = "org.wickedsource.dependencytree.test";
+
+    /**
+     * analyze the test sources the way DependencyTreeService does
+     */
+    private static AnalysisProgress analyze() {
+        File rootFile = new File(System.getProperty("user.dir") + "/src/test/resources/testSrc/" + BASEPACKAGE);
+        Node root = new Node(new LinkedList<>(), rootFile.getPath(), rootFile.getName(), BASEPACKAGE_DOT);
+        DependencyTree dependencyTree = new DependencyTree(BASEPACKAGE, BASEPACKAGE_DOT, root);
+        AnalysisProgress progress = new AnalysisProgress();
+        dependencyTree.setProgress(progress);
+        progress.setPhase(AnalysisProgress.Phase.CREATE_TREE);
+        dependencyTree.createTree(root);
+        progress.setPhase(AnalysisProgress.Phase.SET_DEPENDENCIES);
+        dependencyTree.setDependencies(root);
+        progress.setPhase(AnalysisProgress.Phase.SORT_TREE);
+        dependencyTree.sortTree(root);
+        progress.setPhase(AnalysisProgress.Phase.SET_LAYER);
+        dependencyTree.setLayer(root);
+        progress.setPhase(AnalysisProgress.Phase.DONE);
+        return progress;
+    }
+
+    private static double count(MeterRegistry registry, String name) {
+        return registry.get(name).counter().count();
+    }
+
+    @Test
+    public void analysisIsRecordedTest() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        DependencyTreeMetrics metrics = new DependencyTreeMetrics(registry, () -> 1234, () -> 2);
+        // meters are registered before the first analysis
+        assertEquals(0, registry.get("dependencytree.build").tag("result", "success").timer().count());
+        assertEquals(0, count(registry, "dependencytree.files.parsed"), 0);
+
+        AnalysisProgress progress = analyze();
+        metrics.recordBuild(progress, true);
+        for (String phase : new String[]{"queued", "create_tree", "set_dependencies", "parse", "resolve", "sort_tree", "set_layer"}) {
+            assertEquals(phase, 1, registry.get("dependencytree.phase").tag("phase", phase).timer().count());
+        }
+        assertTrue(registry.get("dependencytree.phase").tag("phase", "set_dependencies").timer()
+                .totalTime(TimeUnit.NANOSECONDS) > 0);
+        assertEquals(1, registry.get("dependencytree.build").tag("result", "success").timer().count());
+        assertEquals(0, registry.get("dependencytree.build").tag("result", "failure").timer().count());
+        assertEquals(progress.getFilesParsed(), count(registry, "dependencytree.files.parsed"), 0);
+        assertTrue(count(registry, "dependencytree.files.parsed") > 0);
+        assertEquals(progress.getBytesRead(), count(registry, "dependencytree.bytes.read"), 0);
+        assertTrue(count(registry, "dependencytree.bytes.read") > 0);
+        assertEquals(progress.getEdgesFound(), count(registry, "dependencytree.edges"), 0);
+        assertTrue(count(registry, "dependencytree.edges") > 0);
+        assertEquals(progress.getNodesCreated(), count(registry, "dependencytree.nodes.created"), 0);
+        assertEquals(1234, registry.get("dependencytree.trees.memory").gauge().value(), 0);
+        assertEquals(2, registry.get("dependencytree.projects.cached").gauge().value(), 0);
+
+        // counters are summed over analyses
+        metrics.recordBuild(analyze(), false);
+        assertEquals(1, registry.get("dependencytree.build").tag("result", "failure").timer().count());
+        assertEquals(2 * progress.getFilesParsed(), count(registry, "dependencytree.files.parsed"), 0);
+    }
+
+    @Test
+    public void serializationIsRecordedTest() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        DependencyTreeMetrics metrics = new DependencyTreeMetrics(registry, () -> 0, () -> 0);
+        metrics.recordSerialization("compact", 1000);
+        metrics.recordSerialization("full", 2000);
+        metrics.recordSerialization("anything", 3000);
+        assertEquals(1, registry.get("dependencytree.serialize").tag("format", "compact").timer().count());
+        assertEquals(2, registry.get("dependencytree.serialize").tag("format", "full").timer().count());
+        assertEquals(5000, registry.get("dependencytree.serialize").tag("format", "full").timer()
+                .totalTime(TimeUnit.NANOSECONDS), 0);
+    }
+}
@@ -0,0 +1,149 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class DependencyTreeServiceTests {
+
+    private Path allowedRoot;
+    private Path projectDir;
+    private DependencyTreeService service;
+
+    @Before
+    public void createProject() throws IOException {
+        allowedRoot = Files.createTempDirectory("service-root");
+        projectDir = allowedRoot.resolve("project");
+        Path file = projectDir.resolve("core/src/main/java/org/example/a/A.java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, "class A {}\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void deleteProject() throws IOException {
+        if (service != null) {
+            service.stopWatching();
+        }
+        try (Stream<Path> paths = Files.walk(allowedRoot)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * @return service configured like application.properties, except for the allowed project roots
+     */
+    private MockMvc createService(String allowedProjectRoots) throws IOException {
+        service = new DependencyTreeService();
+        ReflectionTestUtils.setField(service, "parallelism", 1);
+        ReflectionTestUtils.setField(service, "cacheFile", "");
+        ReflectionTestUtils.setField(service, "watchDebounceMillis", 100L);
+        ReflectionTestUtils.setField(service, "charset", "UTF-8");
+        ReflectionTestUtils.setField(service, "analysisDepth", AnalysisDepth.FULL);
+        ReflectionTestUtils.setField(service, "gzip", true);
+        ReflectionTestUtils.setField(service, "maxConcurrentBuilds", 1);
+        ReflectionTestUtils.setField(service, "allowedProjectRoots", allowedProjectRoots.split(","));
+        ReflectionTestUtils.setField(service, "maxProjects", 20);
+        ReflectionTestUtils.setField(service, "maxMemoryMb", 512L);
+        ReflectionTestUtils.setField(service, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(service, "maxRetainedJobs", 20);
+        ReflectionTestUtils.setField(service, "jobRetentionMinutes", 30L);
+        ReflectionTestUtils.setField(service, "snapshotDir", "");
+        service.init();
+        return MockMvcBuilders.standaloneSetup(service).build();
+    }
+
+    @Test
+    public void onlyDefaultProjectIsAllowedByDefaultTest() throws Exception {
+        MockMvc mockMvc = createService("");
+        mockMvc.perform(get("/getTree").param("projectDir", projectDir.toString()).param("basePackage", "org.example"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/getTree").param("projectDir", "/")).andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void projectOutsideOfAllowedRootsIsForbiddenTest() throws Exception {
+        MockMvc mockMvc = createService(allowedRoot.toString());
+        mockMvc.perform(get("/getTree").param("projectDir", projectDir.toString()).param("basePackage", "org.example"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/getTree").param("projectDir", allowedRoot.getParent().toString())
+                .param("basePackage", "org.example"))
+                .andExpect(status().isForbidden());
+        // a path leaving the allowed root with .. is normalized before it is checked
+        mockMvc.perform(get("/getTree").param("projectDir", projectDir.resolve("../..").toString())
+                .param("basePackage", "org.example"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void changedProjectIsAnalyzedAgainTest() throws Exception {
+        MockMvc mockMvc = createService(allowedRoot.toString());
+        String tree = mockMvc.perform(get("/getTree").param("projectDir", projectDir.toString())
+                .param("basePackage", "org.example")).andReturn().getResponse().getContentAsString();
+        assertTrue(tree.contains("A.java"));
+        assertFalse(tree.contains("B.java"));
+
+        Files.write(projectDir.resolve("core/src/main/java/org/example/a/B.java"),
+                "class B {}\n".getBytes(StandardCharsets.UTF_8));
+        // the watcher invalidates the cached tree once the change has settled
+        long end = System.currentTimeMillis() + 15000;
+        while (!tree.contains("B.java") && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+            tree = mockMvc.perform(get("/getTree").param("projectDir", projectDir.toString())
+                    .param("basePackage", "org.example")).andReturn().getResponse().getContentAsString();
+        }
+        assertTrue(tree.contains("B.java"));
+    }
+
+    @Test
+    public void compactFormatTest() throws Exception {
+        Path b = projectDir.resolve("core/src/main/java/org/example/b/B.java");
+        Files.createDirectories(b.getParent());
+        Files.write(b, "package org.example.b;\nimport org.example.a.A;\nclass B {}\n".getBytes(StandardCharsets.UTF_8));
+        MockMvc mockMvc = createService(allowedRoot.toString());
+        String json = mockMvc.perform(get("/getTree").param("projectDir", projectDir.toString())
+                .param("basePackage", "org.example").param("format", "compact").param("package", "b"))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        JsonNode compact = new ObjectMapper().readTree(json);
+        assertEquals("compact", compact.get("format").asText());
+        assertEquals(2, compact.get("nodes").size());
+        assertEquals("B.java", compact.get("nodes").get(1).get("filename").asText());
+        // A.java is outside of the written package, so it is written as a reference
+        assertEquals(2, compact.get("nodes").get(1).get("dependencies").get(0).asInt());
+        assertEquals("A.java", compact.get("references").get(0).get("filename").asText());
+    }
+
+    @Test
+    public void gzipResponseIsCompleteTest() throws Exception {
+        MockMvc mockMvc = createService(allowedRoot.toString());
+        MockHttpServletResponse response = mockMvc.perform(get("/getTree").param("projectDir", projectDir.toString())
+                .param("basePackage", "org.example").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk()).andReturn().getResponse();
+        assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            JsonNode tree = new ObjectMapper().readTree(in);
+            assertEquals("project", tree.get("filename").asText());
+        }
+    }
+}
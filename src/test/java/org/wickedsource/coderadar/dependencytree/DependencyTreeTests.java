@@ -0,0 +1,383 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class DependencyTreeTests {
+
+    private static final String BASEPACKAGE = "org/example";
+    private static final String BASEPACKAGE_DOT = "org.example";
+    private static final String[] MODULES = {"core", "web"};
+    private static final int PACKAGES = 8;
+    private static final int CLASSES = 10;
+    // order and forbidden names of the File.listFiles walk, see listFilesTree
+    private static final Comparator<File> LIST_FILES_ORDER = (f1, f2) -> {
+        if (f1.isDirectory() && !f2.isDirectory()) {
+            return -1;
+        } else if (!f1.isDirectory() && f2.isDirectory()) {
+            return 1;
+        } else {
+            return f1.compareTo(f2);
+        }
+    };
+
+    private static final Pattern FORBIDDEN = Pattern.compile("(^\\.|build|out|classes|node_modules)");
+
+    private Path projectDir;
+
+    /**
+     * a project with the modules core and web, both containing the packages p0 to p7 with the classes C0 to C9, which
+     * import classes and packages of both modules, use classes by their fully qualified name and reference
+     * classes and packages which do not exist
+     */
+    @Before
+    public void createProject() throws IOException {
+        projectDir = Files.createTempDirectory("dependency-tree");
+        Random random = new Random(3);
+        for (String module : MODULES) {
+            for (int p = 0; p < PACKAGES; p++) {
+                Path packageDir = projectDir.resolve(module + "/src/main/java/" + BASEPACKAGE + "/p" + p);
+                Files.createDirectories(packageDir);
+                for (int c = 0; c < CLASSES; c++) {
+                    StringBuilder source = new StringBuilder("package " + BASEPACKAGE_DOT + ".p" + p + ";\n\n");
+                    for (int i = random.nextInt(5); i > 0; i--) {
+                        source.append("import ").append(randomClass(random)).append(";\n");
+                    }
+                    if (random.nextInt(4) == 0) {
+                        source.append("import " + BASEPACKAGE_DOT + ".p").append(random.nextInt(PACKAGES + 1)).append(".*;\n");
+                    }
+                    source.append("\npublic class C").append(c).append(" {\n");
+                    for (int i = random.nextInt(3); i > 0; i--) {
+                        source.append("    private ").append(randomClass(random)).append(".Inner field").append(i).append(";\n");
+                    }
+                    source.append("}\n");
+                    Files.write(packageDir.resolve("C" + c + ".java"), source.toString().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return qualified name of a class of the project, or of a class or package which does not exist
+     */
+    private static String randomClass(Random random) {
+        return BASEPACKAGE_DOT + ".p" + random.nextInt(PACKAGES + 1) + ".C" + random.nextInt(CLASSES + 1);
+    }
+
+    @After
+    public void deleteProject() throws IOException {
+        try (Stream<Path> paths = Files.walk(projectDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * @return tree of the project with the dependencies of its files set
+     */
+    private Node analyze(int parallelism) {
+        Node root = new Node(new LinkedList<>(), projectDir.toString(), projectDir.getFileName().toString(), "");
+        DependencyTree dependencyTree = new DependencyTree(BASEPACKAGE, BASEPACKAGE_DOT, root, parallelism);
+        dependencyTree.createTree(root);
+        dependencyTree.setDependencies(root);
+        return root;
+    }
+
+    /**
+     * @return path of every file followed by the paths of its dependencies, in the order of the tree
+     */
+    private static List<String> dependencies(Node root) {
+        List<String> dependencies = new ArrayList<>();
+        for (Node child : root.getChildren()) {
+            if (child.hasChildren()) {
+                dependencies.addAll(dependencies(child));
+            } else {
+                dependencies.add(child.getPath() + " -> " + child.getDependencies().stream()
+                        .map(Node::getPath).collect(Collectors.joining(", ")));
+            }
+        }
+        return dependencies;
+    }
+
+    @Test
+    public void parallelDependenciesEqualSequentialTest() {
+        List<String> sequential = dependencies(analyze(1));
+        assertEquals(MODULES.length * PACKAGES * CLASSES, sequential.size());
+        assertTrue("no file has dependencies", sequential.stream().anyMatch(file -> !file.endsWith(" -> ")));
+        for (int parallelism : new int[]{2, 4, 7}) {
+            assertEquals(sequential, dependencies(analyze(parallelism)));
+        }
+    }
+
+    /**
+     * create a tree the way createTree did before it walked the file system with NIO in a ForkJoinPool: listing every
+     * directory with File.listFiles, directories first. The listing of src/main/java/{basepackage} was not sorted
+     * before, it is sorted the same way here, as createTree does now.
+     */
+    private static void listFilesTree(Node root) {
+        File[] files = Objects.requireNonNull(new File(root.getPath()).listFiles());
+        Arrays.sort(files, LIST_FILES_ORDER);
+        List<String> fileNames = Arrays.stream(files).map(File::getName).collect(Collectors.toList());
+        if (fileNames.contains("src")) {
+            for (File file : files) {
+                if (file.getName().equals("src")) {
+                    File childToContinue = new File(file.getPath() + "/main/java/" + BASEPACKAGE);
+                    if (childToContinue.exists()) {
+                        File[] children = Objects.requireNonNull(childToContinue.listFiles());
+                        Arrays.sort(children, LIST_FILES_ORDER);
+                        for (File f : children) {
+                            String packageName = root.getPackageName().equals("") ? f.getName() : root.getPackageName() + "." + f.getName();
+                            addListFilesNode(root, f, new Node(new LinkedList<>(), f.getPath(), f.getName(), packageName));
+                        }
+                    } else {
+                        addListFilesNode(root, file, listFilesNode(root, file));
+                    }
+                }
+            }
+        } else {
+            for (File file : files) {
+                if (!file.isDirectory() && !file.getName().endsWith(".java")
+                        || FORBIDDEN.matcher(file.getName()).find()) {
+                    continue;
+                }
+                addListFilesNode(root, file, listFilesNode(root, file));
+            }
+        }
+    }
+
+    private static Node listFilesNode(Node root, File file) {
+        if (file.getPath().contains("src/main/java") || file.getPath().contains("src\\main\\java")) {
+            return new Node(new LinkedList<>(), file.getPath(), file.getName(), root.getPackageName() + "." + file.getName());
+        }
+        return new Node(new LinkedList<>(), file.getPath(), file.getName(), "");
+    }
+
+    private static void addListFilesNode(Node root, File file, Node node) {
+        if (file.isDirectory()) {
+            listFilesTree(node);
+        }
+        if (node.getFilename().endsWith(".java") || !node.getChildren().isEmpty()) {
+            root.getChildren().add(node);
+        }
+    }
+
+    /**
+     * @return path, filename and package name of every node of a tree in pre-order, indented by depth
+     */
+    private static List<String> nodes(Node node, String indent) {
+        List<String> nodes = new ArrayList<>();
+        nodes.add(indent + node.getPath() + " " + node.getFilename() + " " + node.getPackageName());
+        for (Node child : node.getChildren()) {
+            nodes.addAll(nodes(child, indent + "  "));
+        }
+        return nodes;
+    }
+
+    private void createFile(String path) throws IOException {
+        Path file = projectDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, "class F {}\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void createTreeEqualsListFilesWalkTest() throws IOException {
+        // directories and files sorting before and after each other, files which are not source files
+        createFile("core/src/main/java/" + BASEPACKAGE + "/A.java");
+        createFile("core/src/main/java/" + BASEPACKAGE + "/p0/a/Z.java");
+        createFile("core/src/main/java/" + BASEPACKAGE + "/p0/README.md");
+        createFile("web/src/main/java/" + BASEPACKAGE + "/p1/Z.java");
+        // forbidden names, also as part of a name like layout
+        createFile("core/src/main/java/" + BASEPACKAGE + "/p2/build/B.java");
+        createFile("core/src/main/java/" + BASEPACKAGE + "/p2/layout/B.java");
+        createFile("core/src/main/java/" + BASEPACKAGE + "/p2/.hidden/B.java");
+        createFile("core/src/main/java/" + BASEPACKAGE + "/p2/node_modules/B.java");
+        createFile("core/src/main/java/" + BASEPACKAGE + "/p2/classes/B.java");
+        createFile("build/src/main/java/" + BASEPACKAGE + "/B.java");
+        // empty directories and directories without source files are left out
+        Files.createDirectories(projectDir.resolve("core/src/main/java/" + BASEPACKAGE + "/empty"));
+        Files.createDirectories(projectDir.resolve("core/src/main/java/" + BASEPACKAGE + "/p3/empty/empty"));
+        Files.createDirectories(projectDir.resolve("empty"));
+        createFile("docs/notes.txt");
+        // a module with a source directory of another base package, and nested modules
+        createFile("other/src/main/java/com/example/O.java");
+        createFile("parent/child/src/main/java/" + BASEPACKAGE + "/p4/N.java");
+        createFile("parent/child2/src/test/java/" + BASEPACKAGE + "/T.java");
+
+        Node expected = new Node(new LinkedList<>(), projectDir.toString(), projectDir.getFileName().toString(), "");
+        listFilesTree(expected);
+        for (int parallelism : new int[]{1, 4}) {
+            Node root = new Node(new LinkedList<>(), projectDir.toString(), projectDir.getFileName().toString(), "");
+            new DependencyTree(BASEPACKAGE, BASEPACKAGE_DOT, root, parallelism).createTree(root);
+            assertEquals(nodes(expected, ""), nodes(root, ""));
+        }
+        assertTrue(nodes(expected, "").stream().noneMatch(node -> node.contains("empty") || node.contains("B.java")));
+    }
+
+    @Test
+    public void createTreeOfBasePackageEqualsListFilesWalkTest() {
+        File rootFile = new File(System.getProperty("user.dir") + "/src/test/resources/testSrc/org/wickedsource/dependencytree/test");
+        String basepackage_dot = "org.wickedsource.dependencytree.test";
+        Node expected = new Node(new LinkedList<>(), rootFile.getPath(), rootFile.getName(), basepackage_dot);
+        listFilesTree(expected);
+        Node root = new Node(new LinkedList<>(), rootFile.getPath(), rootFile.getName(), basepackage_dot);
+        new DependencyTree("org/wickedsource/dependencytree/test", basepackage_dot, root, 4).createTree(root);
+        assertEquals(nodes(expected, ""), nodes(root, ""));
+    }
+
+    /**
+     * @return tree of the project built the way DependencyTreeService builds it, with the modification times
+     */
+    private TreeSnapshot build(DependencyCache dependencyCache) {
+        Node root = new Node(new LinkedList<>(), projectDir.toString(), projectDir.getFileName().toString(), "");
+        DependencyTree dependencyTree = new DependencyTree(BASEPACKAGE, BASEPACKAGE_DOT, root, 1);
+        dependencyTree.setDependencyCache(dependencyCache);
+        dependencyTree.createTree(root);
+        dependencyTree.setDependencies(root);
+        root.setDependencies(new LinkedList<>());
+        dependencyTree.sortTree(root);
+        dependencyTree.setLayer(root);
+        root.freeze();
+        return new TreeSnapshot(root, dependencyTree.getIndex(), 0, dependencyTree.getModificationTimes());
+    }
+
+    /**
+     * @return tree updated with TreeUpdate, null if it could not be updated
+     */
+    private static TreeSnapshot update(TreeSnapshot previous, DependencyCache dependencyCache, Path... changedPaths) {
+        DependencyTree dependencyTree = new DependencyTree(BASEPACKAGE, BASEPACKAGE_DOT, previous.getRoot(), 1);
+        dependencyTree.setDependencyCache(dependencyCache);
+        TreeUpdate update = new TreeUpdate(dependencyTree, previous);
+        if (!update.setDependencies(new HashSet<>(Arrays.asList(changedPaths)))) {
+            return null;
+        }
+        update.sortTree();
+        update.setLayer();
+        return update.getSnapshot(0);
+    }
+
+    /**
+     * @return path, layer, dependencies and cycles of every node of a tree in pre-order
+     */
+    private static List<String> layout(Node node) {
+        List<String> layout = new ArrayList<>();
+        layout.add(node.getPath() + " " + node.getLayer() + " -> "
+                + node.getDependencies().stream().map(Node::getPath).collect(Collectors.joining(", ")) + " cycles "
+                + node.getCycles().stream().map(cycle -> cycle.stream().map(Node::getFilename)
+                .collect(Collectors.joining(", "))).collect(Collectors.joining("; ")));
+        for (Node child : node.getChildren()) {
+            layout.addAll(layout(child));
+        }
+        return layout;
+    }
+
+    private static void collectFiles(Node node, List<Node> files) {
+        for (Node child : node.getChildren()) {
+            if (child.hasChildren()) {
+                collectFiles(child, files);
+            } else {
+                files.add(child);
+            }
+        }
+    }
+
+    private Path write(String path, String source) throws IOException {
+        Path file = projectDir.resolve(path);
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * update a tree and check it equals the tree built again
+     */
+    private TreeSnapshot assertUpdateEqualsBuild(TreeSnapshot previous, DependencyCache dependencyCache,
+                                                 Path... changedPaths) {
+        TreeSnapshot updated = update(previous, dependencyCache, changedPaths);
+        assertNotNull(updated);
+        TreeSnapshot rebuilt = build(new DependencyCache(BASEPACKAGE_DOT));
+        assertEquals(layout(rebuilt.getRoot()), layout(updated.getRoot()));
+        assertEquals(rebuilt.getModificationTimes(), updated.getModificationTimes());
+        assertEquals(rebuilt.getEstimatedBytes(), updated.getEstimatedBytes());
+        for (String name : new String[]{"p0.C0", "p1.C10", "p3.C5", "p1.*", "p3.*", "*"}) {
+            assertEquals(paths(rebuilt.getIndex().resolve(name)), paths(updated.getIndex().resolve(name)));
+        }
+        return updated;
+    }
+
+    @Test
+    public void updatedTreeEqualsRebuiltTreeTest() throws IOException {
+        DependencyCache dependencyCache = new DependencyCache(BASEPACKAGE_DOT);
+        TreeSnapshot previous = build(dependencyCache);
+        String core = "core/src/main/java/" + BASEPACKAGE + "/";
+        String web = "web/src/main/java/" + BASEPACKAGE + "/";
+
+        Path modified = write(core + "p0/C0.java", "package " + BASEPACKAGE_DOT + ".p0;\n\nimport " + BASEPACKAGE_DOT
+                + ".p7.C3;\nimport " + BASEPACKAGE_DOT + ".p6.*;\n\npublic class C0 {\n}\n");
+        TreeSnapshot updated = assertUpdateEqualsBuild(previous, dependencyCache, modified);
+        // the files which did not change are shared with the previous tree, which did not change
+        List<Node> previousFiles = new ArrayList<>();
+        collectFiles(previous.getRoot(), previousFiles);
+        Set<Node> sharedFiles = Collections.newSetFromMap(new IdentityHashMap<>());
+        sharedFiles.addAll(previousFiles);
+        List<Node> updatedFiles = new ArrayList<>();
+        collectFiles(updated.getRoot(), updatedFiles);
+        assertEquals(previousFiles.size() - 1, updatedFiles.stream().filter(sharedFiles::contains).count());
+        assertFalse(sharedFiles.contains(previous.getIndex().getFiles("p0.C0").get(0)) == sharedFiles.contains(
+                updated.getIndex().getFiles("p0.C0").get(0)));
+
+        // a file added with a name other files import already and a deleted file whose name exists in the other module
+        // as well, in the updated tree
+        Path added = write(core + "p1/C10.java", "package " + BASEPACKAGE_DOT + ".p1;\n\nimport " + BASEPACKAGE_DOT
+                + ".p2.C4;\n\npublic class C10 {\n}\n");
+        Path deleted = projectDir.resolve(web + "p3/C5.java");
+        Files.delete(deleted);
+        updated = assertUpdateEqualsBuild(updated, dependencyCache, added, deleted);
+
+        // and the other way round
+        Files.delete(added);
+        Path readded = write(web + "p3/C5.java", "package " + BASEPACKAGE_DOT + ".p3;\n\npublic class C5 {\n}\n");
+        if (updated.getIndex().getChangedSize() <= updated.getIndex().size() / 4) {
+            assertUpdateEqualsBuild(updated, dependencyCache, added, readded);
+        } else {
+            // too many nodes were replaced, the tree has to be built again
+            assertNull(update(updated, dependencyCache, added, readded));
+        }
+        // the first tree updated with all changes since it was built
+        assertUpdateEqualsBuild(previous, dependencyCache, modified, added, readded);
+    }
+
+    @Test
+    public void addedPackageIsNotUpdatedTest() throws IOException {
+        DependencyCache dependencyCache = new DependencyCache(BASEPACKAGE_DOT);
+        TreeSnapshot previous = build(dependencyCache);
+        Path added = projectDir.resolve("core/src/main/java/" + BASEPACKAGE + "/p9/C0.java");
+        Files.createDirectories(added.getParent());
+        write("core/src/main/java/" + BASEPACKAGE + "/p9/C0.java", "package " + BASEPACKAGE_DOT + ".p9;\n");
+        assertNull(update(previous, dependencyCache, added.getParent(), added));
+    }
+
+    private static List<String> paths(List<Node> nodes) {
+        return nodes.stream().map(Node::getPath).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,111 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class NodeComparatorTests {
+
+    /**
+     * siblings below one parent: files and packages containing one file each, with random dependencies between the
+     * files
+     *
+     * @param density probability of a dependency between two files
+     */
+    private static List<Node> siblings(Random random, int size, double density) {
+        Node parent = new Node(new ArrayList<>(), "/comparator", "comparator", "comparator");
+        List<Node> files = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            String name = "S" + random.nextInt(1000) + "_" + i;
+            Node sibling;
+            if (random.nextInt(3) == 0) {
+                sibling = new Node(new ArrayList<>(), "/comparator/" + name, name, "comparator." + name);
+                Node file = new Node(new ArrayList<>(), "/comparator/" + name + "/F.java", "F.java", "comparator." + name + ".F.java");
+                file.setParent(sibling);
+                sibling.getChildren().add(file);
+                files.add(file);
+            } else {
+                sibling = new Node(new ArrayList<>(), "/comparator/" + name + ".java", name + ".java", "comparator." + name + ".java");
+                files.add(sibling);
+            }
+            sibling.setParent(parent);
+            parent.getChildren().add(sibling);
+        }
+        for (Node from : files) {
+            for (Node to : files) {
+                if (from != to && random.nextDouble() < density) {
+                    from.getDependencies().add(to);
+                }
+            }
+        }
+        List<Node> siblings = new ArrayList<>(parent.getChildren());
+        Collections.shuffle(siblings, random);
+        return siblings;
+    }
+
+    /**
+     * @return true if no sibling is compared before a sibling in front of it, so the order is the only one
+     * consistent with the comparator
+     */
+    private static boolean isConsistent(List<Node> sorted) {
+        NodeComparator comparator = new NodeComparator();
+        for (int i = 0; i < sorted.size(); i++) {
+            for (int j = i + 1; j < sorted.size(); j++) {
+                if (comparator.compare(sorted.get(i), sorted.get(j)) > 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Test
+    public void sortEqualsComparatorTest() {
+        Random random = new Random(42);
+        int compared = 0;
+        for (int run = 0; run < 2000; run++) {
+            List<Node> siblings = siblings(random, 2 + random.nextInt(12), random.nextDouble() * 0.3);
+            List<Node> expected = new ArrayList<>(siblings);
+            try {
+                expected.sort(new NodeComparator());
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            if (isConsistent(expected)) {
+                NodeComparator.sort(siblings);
+                assertEquals(expected, siblings);
+                compared++;
+            }
+        }
+        assertTrue("too few consistent inputs: " + compared, compared > 1000);
+    }
+
+    @Test
+    public void sortOfCyclesDoesNotFailTest() {
+        Random random = new Random(7);
+        boolean comparatorFailed = false;
+        for (int run = 0; run < 50; run++) {
+            List<Node> siblings = siblings(random, 200, 0.2);
+            try {
+                new ArrayList<>(siblings).sort(new NodeComparator());
+            } catch (IllegalArgumentException e) {
+                comparatorFailed = true;
+            }
+            List<Node> sorted = new ArrayList<>(siblings);
+            NodeComparator.sort(sorted);
+            assertEquals(new HashSet<>(siblings), new HashSet<>(sorted));
+            assertEquals(siblings.size(), sorted.size());
+            // the order does not depend on the order the siblings are given in
+            Collections.shuffle(siblings, random);
+            NodeComparator.sort(siblings);
+            assertEquals(sorted, siblings);
+        }
+        assertTrue("no input made the comparator fail", comparatorFailed);
+    }
+}
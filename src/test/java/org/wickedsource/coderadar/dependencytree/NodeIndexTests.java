@@ -0,0 +1,102 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class NodeIndexTests {
+
+    private Node root;
+    private Node coreService;
+    private Node fooService;
+    private Node bar;
+    private Node util;
+    private Node strings;
+    private Node webService;
+    private Node webFooService;
+    private Node controller;
+    private Node app;
+    private NodeIndex index;
+
+    /**
+     * @return Node below parent, a package if the filename does not end with .java
+     */
+    private static Node add(Node parent, String filename, String packageName) {
+        Node node = new Node(new ArrayList<>(), parent.getPath() + "/" + filename, filename, packageName);
+        parent.getChildren().add(node);
+        return node;
+    }
+
+    /**
+     * two modules, core and web, both containing the package service
+     */
+    @Before
+    public void createTree() {
+        root = new Node(new ArrayList<>(), "/index", "index", "");
+        Node core = add(root, "core", "");
+        coreService = add(core, "service", "service");
+        fooService = add(coreService, "FooService.java", "service.FooService.java");
+        bar = add(coreService, "Bar.java", "service.Bar.java");
+        util = add(core, "util", "util");
+        strings = add(util, "Strings.java", "util.Strings.java");
+        Node web = add(root, "web", "");
+        webService = add(web, "service", "service");
+        webFooService = add(webService, "FooService.java", "service.FooService.java");
+        controller = add(webService, "Controller.java", "service.Controller.java");
+        app = add(web, "App.java", "App.java");
+        index = new NodeIndex(root);
+    }
+
+    @Test
+    public void exactClassTest() {
+        assertEquals(Collections.singletonList(bar), index.resolve("service.Bar"));
+        assertEquals(Collections.singletonList(strings), index.resolve("util.Strings"));
+        assertEquals(Collections.singletonList(app), index.resolve("App"));
+    }
+
+    @Test
+    public void nestedClassTest() {
+        assertEquals(Collections.singletonList(bar), index.resolve("service.Bar.Inner"));
+        assertEquals(Collections.singletonList(strings), index.resolve("util.Strings.Inner.Deeper.method"));
+    }
+
+    @Test
+    public void wildcardPackageTest() {
+        assertEquals(new HashSet<>(Arrays.asList(fooService, bar, webFooService, controller)),
+                new HashSet<>(index.resolve("service.*")));
+        assertEquals(Collections.singletonList(strings), index.resolve("util.*"));
+        // the base package contains the top level packages and files of every module
+        assertEquals(new HashSet<>(Arrays.asList(coreService, util, webService, app)),
+                new HashSet<>(index.resolve("*")));
+        assertTrue(index.resolve("missing.*").isEmpty());
+    }
+
+    @Test
+    public void nameNotInProjectTest() {
+        assertTrue(index.resolve("other.Foo").isEmpty());
+        assertTrue(index.resolve("service.Missing").isEmpty());
+        assertTrue(index.resolve("service.Missing.Inner").isEmpty());
+        // a package is not a class
+        assertTrue(index.resolve("service").isEmpty());
+        assertTrue(index.getPackages("other").isEmpty());
+    }
+
+    @Test
+    public void samePackageInTwoModulesTest() {
+        assertEquals(Arrays.asList(coreService, webService), index.getPackages("service"));
+        assertEquals(coreService.getPackageId(), webService.getPackageId());
+        assertNotEquals(coreService.getPackageId(), util.getPackageId());
+        // a class with the same qualified name in both modules resolves to both files
+        assertEquals(Arrays.asList(fooService, webFooService), index.resolve("service.FooService"));
+        // every node is linked to its parent in its own module
+        assertSame(coreService, fooService.getParent());
+        assertSame(webService, webFooService.getParent());
+        assertNull(root.getParent());
+    }
+}
@@ -0,0 +1,159 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NodeSerializerTests {
+
+    private static Node node(String path, String filename, String packageName) {
+        return new Node(new LinkedList<>(), path, filename, packageName);
+    }
+
+    /**
+     * module/core/{A.java, service/B.java} with A depending on B
+     */
+    private static TreeSnapshot snapshot() {
+        Node root = node("/serializer/module", "module", "");
+        Node core = node("/serializer/module/core", "core", "core");
+        Node a = node("/serializer/module/core/A.java", "A.java", "core.A.java");
+        Node service = node("/serializer/module/core/service", "service", "core.service");
+        Node b = node("/serializer/module/core/service/B.java", "B.java", "core.service.B.java");
+        root.getChildren().add(core);
+        core.getChildren().add(a);
+        core.getChildren().add(service);
+        service.getChildren().add(b);
+        a.getDependencies().add(b);
+        NodeIndex index = new NodeIndex(root);
+        root.freeze();
+        return new TreeSnapshot(root, index, 0);
+    }
+
+    /**
+     * module/core/{A.java, service/B.java} with A and B depending on each other, so A and service form a cycle
+     */
+    private static TreeSnapshot cycleSnapshot() {
+        Node root = node("/compact/module", "module", "");
+        Node core = node("/compact/module/core", "core", "core");
+        Node a = node("/compact/module/core/A.java", "A.java", "core.A.java");
+        Node service = node("/compact/module/core/service", "service", "core.service");
+        Node b = node("/compact/module/core/service/B.java", "B.java", "core.service.B.java");
+        root.getChildren().add(core);
+        core.getChildren().add(a);
+        core.getChildren().add(service);
+        service.getChildren().add(b);
+        a.getDependencies().add(b);
+        b.getDependencies().add(a);
+        core.setCycles(Collections.singletonList(Arrays.asList(a, service)));
+        NodeIndex index = new NodeIndex(root);
+        root.freeze();
+        return new TreeSnapshot(root, index, 0);
+    }
+
+    private static List<Integer> ids(JsonNode array) {
+        List<Integer> ids = new ArrayList<>();
+        array.forEach(id -> ids.add(id.asInt()));
+        return ids;
+    }
+
+    private static JsonNode write(SerializerFactory factory, Node node, int depth) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        SimpleModule simpleModule = new SimpleModule();
+        simpleModule.addSerializer(Node.class, factory.create());
+        objectMapper.registerModule(simpleModule);
+        String json = objectMapper.writer().withAttribute(NodeSerializer.MAX_DEPTH, depth).writeValueAsString(node);
+        return objectMapper.readTree(json);
+    }
+
+    private interface SerializerFactory {
+        StdSerializer<Node> create();
+    }
+
+    @Test
+    public void packageIsLookedUpInIndexTest() {
+        TreeSnapshot snapshot = snapshot();
+        assertSame(snapshot.getRoot(), snapshot.getPackage(""));
+        assertEquals("/serializer/module/core/service", snapshot.getPackage("core.service").getPath());
+        assertNull(snapshot.getPackage("core.missing"));
+    }
+
+    @Test
+    public void collapsedNodesAreCountedTest() throws Exception {
+        TreeSnapshot snapshot = snapshot();
+        JsonNode core = write(NodeSerializer::new, snapshot.getPackage("core"), 1);
+        assertEquals(2, core.get("children").size());
+        assertEquals(1, core.get("dependencies").size());
+        JsonNode service = core.get("children").get(1);
+        assertEquals("service", service.get("filename").asText());
+        assertTrue(service.get("collapsed").asBoolean());
+        assertEquals(0, service.get("children").size());
+        assertEquals(1, service.get("childCount").asInt());
+        // files have no children, so they are never collapsed
+        assertNull(core.get("children").get(0).get("collapsed"));
+
+        JsonNode complete = write(NodeSerializer::new, snapshot.getPackage("core"), -1);
+        assertEquals(1, complete.get("children").get(1).get("children").size());
+    }
+
+    @Test
+    public void compactNodesAreCollapsedTest() throws Exception {
+        JsonNode nodes = write(CompactNodeSerializer::new, snapshot().getRoot(), 1).get("nodes");
+        assertEquals(2, nodes.size());
+        assertTrue(nodes.get(1).get("collapsed").asBoolean());
+        assertEquals(2, nodes.get(1).get("childCount").asInt());
+        assertEquals(1, nodes.get(1).get("dependencyCount").asInt());
+    }
+
+    @Test
+    public void compactNodeTableTest() throws Exception {
+        JsonNode compact = write(CompactNodeSerializer::new, cycleSnapshot().getRoot(), -1);
+        assertEquals("compact", compact.get("format").asText());
+        JsonNode nodes = compact.get("nodes");
+        // pre-order: module, core, A.java, service, B.java
+        assertEquals(5, nodes.size());
+        for (int id = 0; id < nodes.size(); id++) {
+            assertEquals(id, nodes.get(id).get("id").asInt());
+        }
+        assertEquals("/compact/module/core/A.java", nodes.get(2).get("path").asText());
+        assertEquals("/compact/module/core/service/B.java", nodes.get(4).get("path").asText());
+        assertEquals(Arrays.asList(2, 3), ids(nodes.get(1).get("children")));
+        assertEquals(Collections.singletonList(4), ids(nodes.get(2).get("dependencies")));
+        assertEquals(Collections.singletonList(2), ids(nodes.get(4).get("dependencies")));
+        assertEquals(1, nodes.get(1).get("cycles").size());
+        assertEquals(Arrays.asList(2, 3), ids(nodes.get(1).get("cycles").get(0)));
+        assertEquals(0, compact.get("references").size());
+    }
+
+    @Test
+    public void compactDependenciesOutsideOfNodesAreReferencedTest() throws Exception {
+        TreeSnapshot snapshot = cycleSnapshot();
+        // A.java is outside of the written package
+        JsonNode service = write(CompactNodeSerializer::new, snapshot.getPackage("core.service"), -1);
+        assertEquals(2, service.get("nodes").size());
+        assertEquals(Collections.singletonList(2), ids(service.get("nodes").get(1).get("dependencies")));
+        JsonNode reference = service.get("references").get(0);
+        assertEquals(1, service.get("references").size());
+        assertEquals(2, reference.get("id").asInt());
+        assertEquals("/compact/module/core/A.java", reference.get("path").asText());
+        assertEquals("core.A.java", reference.get("packageName").asText());
+
+        // B.java is below the depth limit
+        JsonNode collapsed = write(CompactNodeSerializer::new, snapshot.getRoot(), 2);
+        JsonNode nodes = collapsed.get("nodes");
+        assertEquals(4, nodes.size());
+        assertTrue(nodes.get(3).get("collapsed").asBoolean());
+        assertEquals(Collections.singletonList(4), ids(nodes.get(2).get("dependencies")));
+        assertEquals(1, collapsed.get("references").size());
+        assertEquals("/compact/module/core/service/B.java", collapsed.get("references").get(0).get("path").asText());
+    }
+}
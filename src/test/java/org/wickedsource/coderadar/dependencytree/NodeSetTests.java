@@ -0,0 +1,58 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NodeSetTests {
+
+    private Node file(String name) {
+        return new Node(new ArrayList<>(), name, name, "");
+    }
+
+    @Test
+    public void distinctInInsertionOrderTest() {
+        List<Node> files = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            files.add(file("File" + i + ".java"));
+        }
+        NodeSet set = new NodeSet();
+        for (int i = files.size() - 1; i >= 0; i--) {
+            assertTrue(set.add(files.get(i)));
+        }
+        assertFalse(set.add(files.get(42)));
+        set.addAll(files);
+        assertEquals(100, set.size());
+        assertEquals(files.get(99), set.get(0));
+        assertTrue(set.contains(files.get(0)));
+        assertFalse(set.contains(file("Other.java")));
+    }
+
+    @Test
+    public void removeTest() {
+        Node a = file("A.java");
+        Node b = file("B.java");
+        NodeSet set = new NodeSet(Arrays.asList(a, b, a));
+        assertEquals(Arrays.asList(a, b), set);
+        set.remove(a);
+        assertFalse(set.contains(a));
+        assertTrue(set.add(a));
+        assertEquals(Arrays.asList(b, a), set);
+    }
+
+    @Test
+    public void samePathIsSameNodeTest() {
+        Node a = file("Same.java");
+        Node b = new Node(new ArrayList<>(), "Same.java", "Other.java", "other");
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertNotEquals(a, file("Different.java"));
+        NodeSet set = new NodeSet(Arrays.asList(a, b));
+        assertEquals(1, set.size());
+        assertTrue(set.contains(b));
+    }
+}
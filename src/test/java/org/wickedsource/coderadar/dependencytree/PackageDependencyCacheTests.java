@@ -0,0 +1,75 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class PackageDependencyCacheTests {
+
+    private static Node node(String path) {
+        return new Node(new ArrayList<>(), path, path, path);
+    }
+
+    private static NodeSet dependencies(Node... nodes) {
+        return new NodeSet(Arrays.asList(nodes));
+    }
+
+    @Test
+    public void leastRecentlyUsedPackagesAreEvictedTest() {
+        Node a = node("/cache/a");
+        Node b = node("/cache/b");
+        Node c = node("/cache/c");
+        PackageDependencyCache cache = new PackageDependencyCache(3);
+        cache.put(a, dependencies(b, c));
+        cache.put(b, dependencies(a));
+        assertEquals(3, cache.size());
+        assertNotNull(cache.get(a));
+        // b is the least recently used package now
+        cache.put(c, dependencies(a));
+        assertNull(cache.get(b));
+        assertNotNull(cache.get(a));
+        assertEquals(3, cache.size());
+        // larger than the whole cache
+        cache.put(b, dependencies(a, b, c, node("/cache/d")));
+        assertNull(cache.get(b));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void packageDependenciesAreDerivedFromFilesTest() {
+        Node root = node("/tree");
+        Node core = node("/tree/core");
+        Node service = node("/tree/core/service");
+        Node a = node("/tree/core/A.java");
+        Node b = node("/tree/core/service/B.java");
+        Node c = node("/tree/core/service/C.java");
+        root.getChildren().add(core);
+        core.getChildren().addAll(Arrays.asList(a, service));
+        service.getChildren().addAll(Arrays.asList(b, c));
+        a.getDependencies().add(b);
+        b.getDependencies().add(c);
+        c.getDependencies().add(b);
+        core.setParent(root);
+        a.setParent(core);
+        service.setParent(core);
+        b.setParent(service);
+        c.setParent(service);
+        root.setDependencies(Collections.emptyList());
+
+        assertEquals(Arrays.asList(b, c), core.getDependencies());
+        assertEquals(Arrays.asList(c, b), service.getDependencies());
+        assertTrue(core.hasDependencyOn(service));
+        assertEquals(2, core.countDependencies(service));
+        assertTrue(root.getDependencies().isEmpty());
+        try {
+            core.getDependencies().add(a);
+            fail("package dependencies are derived");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PathIdsTests {
+
+    @Test
+    public void samePathSameIdTest() {
+        PathIds pathIds = new PathIds();
+        PathIds.Key a = pathIds.get("/a");
+        assertSame(a, pathIds.get(new String("/a")));
+        assertNotEquals(a.getId(), pathIds.get("/b").getId());
+    }
+
+    @Test
+    public void unreachablePathsAreDroppedTest() throws InterruptedException {
+        PathIds pathIds = new PathIds();
+        List<PathIds.Key> keys = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            keys.add(pathIds.get("/tree/File" + i + ".java"));
+        }
+        PathIds.Key kept = keys.get(7);
+        keys = null;
+        for (int i = 0; i < 50 && pathIds.size() > 1; i++) {
+            System.gc();
+            Thread.sleep(20);
+            pathIds.expunge();
+        }
+        assertEquals(1, pathIds.size());
+        assertSame(kept, pathIds.get("/tree/File7.java"));
+
+        // ids of dropped paths are reused, the kept id is not given to another path
+        Set<Integer> ids = new HashSet<>();
+        List<PathIds.Key> newKeys = new ArrayList<>();
+        for (int i = 0; i < 999; i++) {
+            PathIds.Key key = pathIds.get("/other/File" + i + ".java");
+            newKeys.add(key);
+            ids.add(key.getId());
+        }
+        assertEquals(999, ids.size());
+        assertFalse(ids.contains(kept.getId()));
+        assertTrue(ids.stream().allMatch(id -> id < 1000));
+        // newKeys is used here so its Keys are still reachable
+        assertEquals(newKeys.size() + 1, pathIds.size());
+    }
+
+    @Test
+    public void nodesOfSamePathAreEqualTest() {
+        Node a = new Node(new ArrayList<>(), "/path-ids/A.java", "A.java", "");
+        Node b = new Node(new ArrayList<>(), "/path-ids/A.java", "A.java", "");
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        b.setPath("/path-ids/B.java");
+        assertNotEquals(a, b);
+    }
+}
@@ -0,0 +1,84 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import org.junit.Test;
+
+import java.nio.file.Paths;
+import java.util.LinkedList;
+
+import static org.junit.Assert.*;
+
+public class ProjectCacheTests {
+
+    private static Project project(String name) {
+        return new Project(Paths.get("/projects", name), "org.example", new DependencyCache("org.example"));
+    }
+
+    private static TreeSnapshot snapshot(String name) {
+        Node root = new Node(new LinkedList<>(), "/projects/" + name, name, "");
+        root.getChildren().add(new Node(new LinkedList<>(), "/projects/" + name + "/A.java", "A.java", "org.example"));
+        root.freeze();
+        return new TreeSnapshot(root, new NodeIndex(root), 0);
+    }
+
+    @Test
+    public void leastRecentlyUsedProjectIsEvictedTest() {
+        ProjectCache cache = new ProjectCache(2, Long.MAX_VALUE, 0);
+        Project a = cache.putIfAbsent(project("a"));
+        Project b = cache.putIfAbsent(project("b"));
+        assertSame(a, cache.get(a.getKey()));
+        cache.putIfAbsent(project("c"));
+        assertEquals(2, cache.size());
+        assertSame(a, cache.get(a.getKey()));
+        assertNull(cache.get(b.getKey()));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void putIfAbsentKeepsCachedProjectTest() {
+        ProjectCache cache = new ProjectCache(2, Long.MAX_VALUE, 0);
+        Project a = cache.putIfAbsent(project("a"));
+        assertSame(a, cache.putIfAbsent(project("a")));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void projectsAreEvictedWhenTreesTakeTooMuchMemoryTest() {
+        long treeBytes = snapshot("a").getEstimatedBytes();
+        assertTrue(treeBytes > 0);
+        ProjectCache cache = new ProjectCache(10, treeBytes * 2, 0);
+        Project a = cache.putIfAbsent(project("a"));
+        Project b = cache.putIfAbsent(project("b"));
+        Project c = cache.putIfAbsent(project("c"));
+        assertTrue(a.publish(snapshot("a"), a.getVersion()));
+        assertTrue(b.publish(snapshot("b"), b.getVersion()));
+        cache.evict(b);
+        assertEquals(3, cache.size());
+        assertTrue(c.publish(snapshot("c"), c.getVersion()));
+        cache.evict(c);
+        // a is the least recently used project and is closed when it is evicted
+        assertEquals(2, cache.size());
+        assertNull(cache.get(a.getKey()));
+        assertNull(a.getSnapshot());
+        assertEquals(treeBytes * 2, cache.getEstimatedBytes());
+    }
+
+    @Test
+    public void idleProjectsExpireTest() throws InterruptedException {
+        ProjectCache cache = new ProjectCache(10, Long.MAX_VALUE, 20);
+        Project a = cache.putIfAbsent(project("a"));
+        Thread.sleep(50);
+        assertNull(cache.get(a.getKey()));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void changedProjectDoesNotPublishOutdatedTreeTest() {
+        Project a = project("a");
+        long version = a.getVersion();
+        a.invalidate();
+        assertFalse(a.publish(snapshot("a"), version));
+        assertNull(a.getSnapshot());
+        assertTrue(a.publish(snapshot("a"), a.getVersion()));
+        assertNotNull(a.getSnapshot());
+    }
+}
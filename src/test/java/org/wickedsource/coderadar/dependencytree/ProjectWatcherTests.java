@@ -0,0 +1,141 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class ProjectWatcherTests {
+
+    private static final long DEBOUNCE_MILLIS = 300;
+    // the watch service of some platforms polls, so events may take a few seconds to arrive
+    private static final long TIMEOUT_MILLIS = 15000;
+
+    private Path dir;
+    private ProjectWatcher watcher;
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicLong lastCallMillis = new AtomicLong();
+    private final AtomicReference<Set<Path>> lastChanges = new AtomicReference<>();
+
+    @Before
+    public void createWatcher() throws IOException {
+        dir = Files.createTempDirectory("project-watcher");
+        Files.createDirectories(dir.resolve("src"));
+        Files.createDirectories(dir.resolve("build"));
+        Files.createDirectories(dir.resolve("src/layout"));
+        Files.createDirectories(dir.resolve(".git"));
+        watcher = new ProjectWatcher(dir, DEBOUNCE_MILLIS, changes -> {
+            lastChanges.set(changes);
+            lastCallMillis.set(System.currentTimeMillis());
+            calls.incrementAndGet();
+        });
+    }
+
+    @After
+    public void deleteFiles() throws IOException {
+        watcher.close();
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static void write(Path file) throws IOException {
+        Files.write(file, ("class " + file.getFileName() + " {}\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * wait until the listener has been called a number of times, then for another debounce interval to see further
+     * calls
+     */
+    private void awaitCalls(int expected) throws InterruptedException {
+        long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (calls.get() < expected && System.currentTimeMillis() < end) {
+            Thread.sleep(20);
+        }
+        Thread.sleep(3 * DEBOUNCE_MILLIS);
+        assertEquals(expected, calls.get());
+    }
+
+    @Test
+    public void changesAreDebouncedTest() throws Exception {
+        watcher.start();
+        long lastWriteMillis = 0;
+        for (int i = 0; i < 5; i++) {
+            write(dir.resolve("src/F" + i + ".java"));
+            lastWriteMillis = System.currentTimeMillis();
+            Thread.sleep(DEBOUNCE_MILLIS / 5);
+        }
+        awaitCalls(1);
+        assertTrue(lastCallMillis.get() - lastWriteMillis >= DEBOUNCE_MILLIS - 50);
+
+        // changes after the listener was called cause another call
+        write(dir.resolve("src/F0.java"));
+        awaitCalls(2);
+    }
+
+    @Test
+    public void changesInCreatedDirectoriesAreSeenTest() throws Exception {
+        watcher.start();
+        Files.createDirectories(dir.resolve("src/created"));
+        awaitCalls(1);
+        // files may have been created in the directory before it was registered
+        assertNull(lastChanges.get());
+        write(dir.resolve("src/created/F.java"));
+        awaitCalls(2);
+        assertTrue(lastChanges.get().contains(dir.resolve("src/created/F.java")));
+    }
+
+    @Test
+    public void changedPathsAreReportedTest() throws Exception {
+        write(dir.resolve("src/F0.java"));
+        watcher.start();
+        write(dir.resolve("src/F0.java"));
+        write(dir.resolve("src/F1.java"));
+        Files.delete(dir.resolve("src/F0.java"));
+        awaitCalls(1);
+        Set<Path> expected = new HashSet<>();
+        expected.add(dir.resolve("src/F0.java"));
+        expected.add(dir.resolve("src/F1.java"));
+        // polling watch services may report the modified directory as well
+        assertTrue(lastChanges.get().containsAll(expected));
+    }
+
+    @Test
+    public void changesInForbiddenDirectoriesAreIgnoredTest() throws Exception {
+        watcher.start();
+        write(dir.resolve("build/F.class"));
+        // names createTree skips as well, see DependencyTree.isForbidden
+        write(dir.resolve("src/layout/F.java"));
+        write(dir.resolve(".git/index"));
+        awaitCalls(0);
+    }
+
+    @Test
+    public void initialTaskRunsOnWatcherThreadTest() throws Exception {
+        AtomicReference<String> initialThread = new AtomicReference<>();
+        watcher.start(() -> {
+            initialThread.set(Thread.currentThread().getName());
+            // a change made while the initial task runs is not missed
+            try {
+                write(dir.resolve("src/F.java"));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        awaitCalls(1);
+        assertEquals("project-watcher-" + dir.getFileName(), initialThread.get());
+    }
+}
@@ -0,0 +1,58 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SiblingLayeringTests {
+
+    private Node a;
+    private Node b;
+    private Node c;
+    private Node d;
+    private Node parent;
+
+    @Before
+    public void init() {
+        a = file("A.java");
+        b = file("B.java");
+        c = file("C.java");
+        d = file("D.java");
+        // A -> B -> C -> B, D is independent
+        a.getDependencies().add(b);
+        b.getDependencies().add(c);
+        c.getDependencies().add(b);
+        parent = new Node(new ArrayList<>(Arrays.asList(a, b, c, d)), "", "parent", "parent");
+    }
+
+    private Node file(String name) {
+        return new Node(new ArrayList<>(), name, name, "");
+    }
+
+    @Test
+    public void layersAndCyclesTest() {
+        SiblingLayering layering = new SiblingLayering(new SiblingDependencyMatrix<>(NodeTreeView.INSTANCE, parent.getChildren()));
+        assertEquals(0, layering.getLayer(0));
+        assertEquals(1, layering.getLayer(1));
+        assertEquals(1, layering.getLayer(2));
+        assertEquals(0, layering.getLayer(3));
+        assertEquals(1, layering.getCycles().size());
+        assertArrayEquals(new int[]{1, 2}, layering.getCycles().get(0));
+    }
+
+    @Test
+    public void setLayerTest() {
+        new DependencyTree("", "", parent).setLayer(parent);
+        assertEquals(0, a.getLayer());
+        assertEquals(1, b.getLayer());
+        assertEquals(1, c.getLayer());
+        assertEquals(0, d.getLayer());
+        assertEquals(Collections.singletonList(Arrays.asList(b, c)), parent.getCycles());
+    }
+}
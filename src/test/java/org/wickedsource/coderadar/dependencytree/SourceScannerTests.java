@@ -0,0 +1,175 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SourceScannerTests {
+
+    private static final String BASEPACKAGE = "org/wickedsource/dependencytree/test";
+    private static final String BASEPACKAGE_DOT = "org.wickedsource.dependencytree.test";
+
+    private SourceScanner scanner;
+    private Path testSrc;
+
+    @Before
+    public void init() {
+        scanner = new SourceScanner(BASEPACKAGE_DOT);
+        testSrc = Paths.get(System.getProperty("user.dir"), "src/test/resources/testSrc", BASEPACKAGE);
+    }
+
+    private List<String> scan(String file) throws IOException {
+        return scanner.scan(testSrc.resolve(file));
+    }
+
+    @Test
+    public void importsAndQualifiedNamesTest() throws IOException {
+        assertEquals(Arrays.asList(
+                BASEPACKAGE_DOT + ".somepackage.CoreDependencyTest",
+                BASEPACKAGE_DOT + ".wildcardpackage.*",
+                BASEPACKAGE_DOT + ".somepackage.FullyClassifiedDependencyTest"),
+                scan("CoreTest.java"));
+        assertEquals(Collections.singletonList(BASEPACKAGE_DOT + ".CoreTest"), scan("somepackage/CircularDependencyTest.java"));
+        assertEquals(Collections.singletonList(BASEPACKAGE_DOT + ".CoreTest"), scan("wildcardpackage/WildcardImportCircularDependencyTest.java"));
+        assertTrue(scan("somepackage/CoreDependencyTest.java").isEmpty());
+        assertTrue(scan("wildcardpackage/WildcardImport1Test.java").isEmpty());
+    }
+
+    @Test
+    public void duplicateDependenciesTest() throws IOException {
+        assertEquals(Arrays.asList(
+                BASEPACKAGE_DOT + ".CoreTest",
+                BASEPACKAGE_DOT + ".wildcardpackage.WildcardImport1Test",
+                BASEPACKAGE_DOT + ".wildcardpackage.*"),
+                scan("somepackage/DuplicateDependenciesTest.java"));
+        assertEquals(Arrays.asList(
+                BASEPACKAGE_DOT + ".wildcardpackage.*",
+                BASEPACKAGE_DOT + ".wildcardpackage.WildcardImport1Test"),
+                scan("somepackage/DuplicateDependencies2Test.java"));
+    }
+
+    @Test
+    public void invalidDependenciesTest() throws IOException {
+        assertTrue("Imports in comments, strings or code blocks are wrongfully processed",
+                scan("somepackage/InvalidDependencyTest.java").isEmpty());
+        String content = "import static org.wickedsource.dependencytree.test.CoreTest.method;\n" +
+                "/* org.wickedsource.dependencytree.test.A */ class B {\n" +
+                "    char c = '\"'; String s = \"org.wickedsource.dependencytree.test.C\";\n" +
+                "    Object o = org.wickedsource.dependencytree.test.somepackage.D.create();\n" +
+                "    double d = 1.5e10;\n" +
+                "}";
+        assertEquals(Arrays.asList(BASEPACKAGE_DOT + ".CoreTest", BASEPACKAGE_DOT + ".somepackage.D"),
+                scanner.scan(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void staticImportsTest() {
+        String content = "import static org.wickedsource.dependencytree.test.CoreTest.method;\n" +
+                "import static org.wickedsource.dependencytree.test.somepackage.D.*;\n" +
+                "import static org.wickedsource.dependencytree.test.somepackage.E.Inner.CONSTANT;\n" +
+                "import static java.util.Collections.emptyList;\n" +
+                "class B {}";
+        assertEquals(Arrays.asList(
+                BASEPACKAGE_DOT + ".CoreTest",
+                BASEPACKAGE_DOT + ".somepackage.D",
+                BASEPACKAGE_DOT + ".somepackage.E.Inner"),
+                scanner.scan(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void constructorCallsTest() {
+        String content = "class B {\n" +
+                "    Object a = new org.wickedsource.dependencytree.test.a.b.C();\n" +
+                "    Object b = new /* comment */ org.wickedsource.dependencytree.test.D<String>(1);\n" +
+                "    Object c = new org.wickedsource.dependencytree.test.E.Inner(org.wickedsource.dependencytree.test.F.create());\n" +
+                "}";
+        assertEquals(Arrays.asList(
+                BASEPACKAGE_DOT + ".a.b.C",
+                BASEPACKAGE_DOT + ".D",
+                BASEPACKAGE_DOT + ".E.Inner",
+                BASEPACKAGE_DOT + ".F"),
+                scanner.scan(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void qualifiedAnnotationsTest() {
+        String content = "import org.wickedsource.dependencytree.test.A;\n" +
+                "@org.wickedsource.dependencytree.test.pkg.Ann(value = \"x\")\n" +
+                "class B {\n" +
+                "    @ org.wickedsource.dependencytree.test.pkg.Other (org.wickedsource.dependencytree.test.F.create())\n" +
+                "    @org.wickedsource.dependencytree.test.Marker Object a;\n" +
+                "}";
+        assertEquals(Arrays.asList(
+                BASEPACKAGE_DOT + ".A",
+                BASEPACKAGE_DOT + ".pkg.Ann",
+                BASEPACKAGE_DOT + ".pkg.Other",
+                BASEPACKAGE_DOT + ".F",
+                BASEPACKAGE_DOT + ".Marker"),
+                scanner.scan(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void charsetTest() {
+        String content = "import org.wickedsource.dependencytree.test.Gr\u00f6\u00dfe;\n" +
+                "class B { org.wickedsource.dependencytree.test.somepackage.D d; }";
+        List<String> expected = Arrays.asList(BASEPACKAGE_DOT + ".Gr\u00f6\u00dfe", BASEPACKAGE_DOT + ".somepackage.D");
+        assertEquals(expected, scanner.scan(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8))));
+        assertEquals(expected, new SourceScanner(BASEPACKAGE_DOT, StandardCharsets.ISO_8859_1, AnalysisDepth.FULL)
+                .scan(ByteBuffer.wrap(content.getBytes(StandardCharsets.ISO_8859_1))));
+        assertEquals(expected, new SourceScanner(BASEPACKAGE_DOT, StandardCharsets.UTF_16, AnalysisDepth.FULL)
+                .scan(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_16))));
+    }
+
+    @Test
+    public void largeFileTest() throws IOException {
+        StringBuilder content = new StringBuilder("import org.wickedsource.dependencytree.test.CoreTest;\nclass Large {\n");
+        while (content.length() < 512 * 1024) {
+            content.append("    // org.wickedsource.dependencytree.test.NotADependency\n");
+        }
+        content.append("    org.wickedsource.dependencytree.test.somepackage.D d;\n}");
+        Path file = Files.createTempFile("Large", ".java");
+        try {
+            Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+            assertEquals(Arrays.asList(BASEPACKAGE_DOT + ".CoreTest", BASEPACKAGE_DOT + ".somepackage.D"), scanner.scan(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void importsOnlyTest() throws IOException {
+        SourceScanner importsOnly = new SourceScanner(BASEPACKAGE_DOT, StandardCharsets.UTF_8, AnalysisDepth.IMPORTS_ONLY);
+        assertEquals(Arrays.asList(
+                BASEPACKAGE_DOT + ".somepackage.CoreDependencyTest",
+                BASEPACKAGE_DOT + ".wildcardpackage.*"),
+                importsOnly.scan(testSrc.resolve("CoreTest.java")));
+
+        // an import area longer than the head of the file which is read first
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append("import org.wickedsource.dependencytree.test.Class").append(i).append(";\n");
+        }
+        content.append("class Long { org.wickedsource.dependencytree.test.somepackage.D d; }");
+        Path file = Files.createTempFile("Long", ".java");
+        try {
+            Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+            List<String> imports = importsOnly.scan(file);
+            assertEquals(1000, imports.size());
+            assertEquals(BASEPACKAGE_DOT + ".Class999", imports.get(999));
+            assertEquals(1001, scanner.scan(file).size());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
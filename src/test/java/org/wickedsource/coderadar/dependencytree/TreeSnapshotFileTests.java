@@ -0,0 +1,107 @@
+package org.wickedsource.coderadar.dependencytree;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class TreeSnapshotFileTests {
+
+    private Path projectDir;
+    private Path snapshotFile;
+    private Project project;
+
+    @Before
+    public void createProject() throws IOException {
+        projectDir = Files.createTempDirectory("snapshot-project");
+        Path sources = Files.createDirectories(projectDir.resolve("module/src/main/java/org/example"));
+        Files.createDirectories(sources.resolve("a"));
+        Files.createDirectories(sources.resolve("b"));
+        Files.write(sources.resolve("a/A.java"), "package org.example.a;\nimport org.example.b.B;\nclass A {}\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(sources.resolve("b/B.java"), "package org.example.b;\nimport org.example.a.*;\nclass B {}\n".getBytes(StandardCharsets.UTF_8));
+        snapshotFile = Files.createTempFile("tree", ".snapshot");
+        project = new Project(projectDir, "org.example", new DependencyCache("org.example"));
+    }
+
+    @After
+    public void deleteProject() throws IOException {
+        try (Stream<Path> paths = Files.walk(projectDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+        Files.deleteIfExists(snapshotFile);
+    }
+
+    private TreeSnapshot analyzeAndSave() throws IOException {
+        Node root = new Node(new LinkedList<>(), projectDir.toString(), projectDir.getFileName().toString(), "");
+        DependencyTree dependencyTree = new DependencyTree("org/example", "org.example", root);
+        dependencyTree.createTree(root);
+        dependencyTree.setDependencies(root);
+        root.setDependencies(new LinkedList<>());
+        dependencyTree.sortTree(root);
+        dependencyTree.setLayer(root);
+        root.freeze();
+        TreeSnapshot snapshot = new TreeSnapshot(root, dependencyTree.getIndex(), 42);
+        Map<String, Long> modificationTimes = dependencyTree.getModificationTimes();
+        TreeSnapshotFile.save(snapshotFile, snapshot, project, AnalysisDepth.FULL, "UTF-8", modificationTimes);
+        return snapshot;
+    }
+
+    private static String write(Node node) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        SimpleModule simpleModule = new SimpleModule();
+        simpleModule.addSerializer(Node.class, new NodeSerializer());
+        objectMapper.registerModule(simpleModule);
+        return objectMapper.writeValueAsString(node);
+    }
+
+    @Test
+    public void loadedTreeIsWrittenLikeTheSavedTreeTest() throws IOException {
+        TreeSnapshot saved = analyzeAndSave();
+        TreeSnapshot loaded = TreeSnapshotFile.load(snapshotFile, project, AnalysisDepth.FULL, "UTF-8");
+        assertNotNull(loaded);
+        assertEquals(write(saved.getRoot()), write(loaded.getRoot()));
+        assertEquals(42, loaded.getBuildMillis());
+        assertEquals(1, loaded.getRoot().getChildren().get(0).getCycles().size());
+        assertEquals("a", loaded.getPackage("a").getFilename());
+    }
+
+    @Test
+    public void changedFileMakesTreeStaleTest() throws IOException {
+        analyzeAndSave();
+        Path file = projectDir.resolve("module/src/main/java/org/example/b/B.java");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 10000));
+        assertNull(TreeSnapshotFile.load(snapshotFile, project, AnalysisDepth.FULL, "UTF-8"));
+    }
+
+    @Test
+    public void addedFileMakesTreeStaleTest() throws IOException {
+        analyzeAndSave();
+        Path directory = projectDir.resolve("module/src/main/java/org/example/b");
+        long lastModified = Files.getLastModifiedTime(directory).toMillis();
+        Files.write(directory.resolve("C.java"), "package org.example.b;\nclass C {}\n".getBytes(StandardCharsets.UTF_8));
+        // file systems with a coarse resolution may not change the time of the directory within the same second
+        Files.setLastModifiedTime(directory, FileTime.fromMillis(lastModified + 10000));
+        assertNull(TreeSnapshotFile.load(snapshotFile, project, AnalysisDepth.FULL, "UTF-8"));
+    }
+
+    @Test
+    public void treeOfOtherSettingsIsNotLoadedTest() throws IOException {
+        analyzeAndSave();
+        assertNull(TreeSnapshotFile.load(snapshotFile, project, AnalysisDepth.IMPORTS_ONLY, "UTF-8"));
+        Project other = new Project(projectDir, "org.other", new DependencyCache("org.other"));
+        assertNull(TreeSnapshotFile.load(snapshotFile, other, AnalysisDepth.FULL, "UTF-8"));
+    }
+}